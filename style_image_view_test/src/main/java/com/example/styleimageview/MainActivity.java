@@ -40,6 +40,8 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         image = (StyleImageView) findViewById(R.id.image);
+        // seek bars call updateStyle() many times per frame
+        image.setCoalesceUpdates(true);
         listView = (ListView) findViewById(R.id.list);
         initOptions();
         listView.setAdapter(new ListAdapter());
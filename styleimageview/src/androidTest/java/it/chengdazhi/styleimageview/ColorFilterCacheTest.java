@@ -0,0 +1,101 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Checks that views sharing a static style share one filter, and measures what that saves on the device.
+ * The measurement is logged, see adb logcat -s ColorFilterCache
+ */
+public class ColorFilterCacheTest extends AndroidTestCase {
+    private static final String TAG = "ColorFilterCache";
+    // a grid of StyleImageViews all in one style
+    private static final int VIEWS = 200;
+    private static final int ROUNDS = 20;
+
+    private final float[] matrix = Styler.calculateStyleMatrix(Styler.Mode.SEPIA, 20, 1.1F, 1);
+    private final ColorMatrixColorFilter[] filters = new ColorMatrixColorFilter[VIEWS];
+
+    public void testSharedStyleCreatesOneFilter() {
+        ColorFilterCache.clear();
+        long misses = ColorFilterCache.missCount();
+        long hits = ColorFilterCache.hitCount();
+        internFilters();
+        for (ColorMatrixColorFilter filter : filters) {
+            assertSame(filters[0], filter);
+        }
+        assertEquals(1, ColorFilterCache.missCount() - misses);
+        assertEquals(VIEWS - 1, ColorFilterCache.hitCount() - hits);
+    }
+
+    public void testMeasureSavings() {
+        // let both paths get compiled before timing them
+        createFilters();
+        internFilters();
+        long createNanos = Long.MAX_VALUE;
+        long internNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            createFilters();
+            createNanos = Math.min(createNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            internFilters();
+            internNanos = Math.min(internNanos, System.nanoTime() - start);
+        }
+
+        ColorFilterCache.clear();
+        long[] created = measureMemory(false);
+        long[] interned = measureMemory(true);
+        Log.i(TAG, String.format(Locale.US, "%d views in one style: new filters %.1f us, %d B native, %d B java heap; "
+                        + "interned %.1f us, %d B native, %d B java heap",
+                VIEWS, createNanos / 1000F, created[0], created[1], internNanos / 1000F, interned[0], interned[1]));
+    }
+
+    /**
+     * @return native and java heap bytes held by the filters of every view
+     */
+    private long[] measureMemory(boolean intern) {
+        Arrays.fill(filters, null);
+        collectGarbage();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        long javaBefore = usedJavaHeap();
+        if (intern) {
+            internFilters();
+        } else {
+            createFilters();
+        }
+        collectGarbage();
+        return new long[] {Debug.getNativeHeapAllocatedSize() - nativeBefore, usedJavaHeap() - javaBefore};
+    }
+
+    private void createFilters() {
+        for (int i = 0; i < VIEWS; i++) {
+            // what setDrawableStyleByMatrix did for every view before filters were interned
+            filters[i] = new ColorMatrixColorFilter(new ColorMatrix(matrix.clone()));
+        }
+    }
+
+    private void internFilters() {
+        for (int i = 0; i < VIEWS; i++) {
+            filters[i] = ColorFilterCache.get(matrix);
+        }
+    }
+
+    private static void collectGarbage() {
+        // native filters are freed by finalizers, so collect twice around them
+        Runtime.getRuntime().gc();
+        System.runFinalization();
+        Runtime.getRuntime().gc();
+    }
+
+    private static long usedJavaHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,227 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the shared driver frame by frame, with listeners changing the running transitions in the middle of a frame.
+ * Stylers are started in order, so the first one created is in slot 0 of the driver.
+ */
+public class StyleAnimationDriverTest extends InstrumentationTestCase {
+    private static final long DURATION_MILLIS = 100;
+    private static final long FIRST_FRAME = 1000000000L;
+    private static final long HALF_WAY = FIRST_FRAME + DURATION_MILLIS * 1000000 / 2;
+    private static final long LAST_FRAME = FIRST_FRAME + DURATION_MILLIS * 1000000;
+
+    private final StyleAnimationDriver driver = StyleAnimationDriver.getInstance();
+    private final List<Styler> stylers = new ArrayList<>();
+
+    @UiThreadTest
+    public void testFinishedTransitionsAreSwapRemovedWithoutSkipping() {
+        try {
+            RecordingListener a = startStyler();
+            RecordingListener b = startStyler();
+            RecordingListener c = startStyler();
+            driver.doFrame(FIRST_FRAME);
+            // a's slot gets c, then b, each is handled in the same frame
+            driver.doFrame(LAST_FRAME);
+            assertEquals(0, driver.getRunningCount());
+            for (RecordingListener listener : new RecordingListener[] {a, b, c}) {
+                assertEquals(2, listener.updates);
+                assertEquals(1, listener.ends);
+                assertEquals(1F, listener.lastFraction, 0);
+            }
+        } finally {
+            cancelAll();
+        }
+    }
+
+    @UiThreadTest
+    public void testListenerCancelingLaterStyler() {
+        try {
+            RecordingListener a = startStyler();
+            RecordingListener b = startStyler();
+            RecordingListener c = startStyler();
+            a.onUpdate = cancel(1);
+            driver.doFrame(FIRST_FRAME);
+            // c took b's slot and still got the frame
+            assertEquals(2, driver.getRunningCount());
+            assertEquals(1, a.updates);
+            assertEquals(0, b.updates);
+            assertEquals(1, c.updates);
+            driver.doFrame(HALF_WAY);
+            assertEquals(2, a.updates);
+            assertEquals(0, b.updates);
+            assertEquals(2, c.updates);
+            assertEquals(0.5F, c.lastFraction, 0.001F);
+        } finally {
+            cancelAll();
+        }
+    }
+
+    @UiThreadTest
+    public void testListenerCancelingEarlierStyler() {
+        try {
+            RecordingListener a = startStyler();
+            RecordingListener b = startStyler();
+            RecordingListener c = startStyler();
+            c.onUpdate = cancel(0);
+            driver.doFrame(FIRST_FRAME);
+            // c, the last one, moved into a's slot which was already handled, the frame ends there
+            assertEquals(2, driver.getRunningCount());
+            assertEquals(1, a.updates);
+            assertEquals(1, b.updates);
+            assertEquals(1, c.updates);
+            driver.doFrame(HALF_WAY);
+            assertEquals(1, a.updates);
+            assertEquals(2, b.updates);
+            assertEquals(2, c.updates);
+            driver.doFrame(LAST_FRAME);
+            assertEquals(0, driver.getRunningCount());
+            assertEquals(0, a.ends);
+            assertEquals(1, b.ends);
+            assertEquals(1, c.ends);
+        } finally {
+            cancelAll();
+        }
+    }
+
+    @UiThreadTest
+    public void testListenerCancelingItsOwnStyler() {
+        try {
+            RecordingListener a = startStyler();
+            RecordingListener b = startStyler();
+            RecordingListener c = startStyler();
+            b.onUpdate = cancel(1);
+            driver.doFrame(FIRST_FRAME);
+            // c moved into b's slot, which is handled again instead of skipped
+            assertEquals(2, driver.getRunningCount());
+            assertEquals(1, a.updates);
+            assertEquals(1, b.updates);
+            assertEquals(1, c.updates);
+            driver.doFrame(LAST_FRAME);
+            assertEquals(0, driver.getRunningCount());
+            assertEquals(1, b.updates);
+            assertEquals(2, c.updates);
+            assertEquals(1, c.ends);
+        } finally {
+            cancelAll();
+        }
+    }
+
+    @UiThreadTest
+    public void testListenerRestartingAnotherStyler() {
+        try {
+            RecordingListener a = startStyler();
+            RecordingListener b = startStyler();
+            RecordingListener c = startStyler();
+            driver.doFrame(FIRST_FRAME);
+            a.onUpdate = new Runnable() {
+                @Override
+                public void run() {
+                    stylers.get(2).setMode(Styler.Mode.INVERT).updateStyle();
+                }
+            };
+            driver.doFrame(HALF_WAY);
+            // c restarted in its own slot and starts over from this frame
+            assertEquals(3, driver.getRunningCount());
+            assertEquals(2, c.updates);
+            assertEquals(0F, c.lastFraction, 0);
+            driver.doFrame(LAST_FRAME);
+            assertEquals(1, driver.getRunningCount());
+            assertEquals(1, a.ends);
+            assertEquals(1, b.ends);
+            assertEquals(0.5F, c.lastFraction, 0.001F);
+        } finally {
+            cancelAll();
+        }
+    }
+
+    @UiThreadTest
+    public void testListenerRestartingItsOwnStylerOnLastFrame() {
+        try {
+            RecordingListener a = startStyler();
+            RecordingListener b = startStyler();
+            driver.doFrame(FIRST_FRAME);
+            a.onUpdate = new Runnable() {
+                @Override
+                public void run() {
+                    stylers.get(0).setMode(Styler.Mode.INVERT).updateStyle();
+                }
+            };
+            driver.doFrame(LAST_FRAME);
+            // the finished transition was replaced by the listener, so it is kept instead of removed
+            assertEquals(1, driver.getRunningCount());
+            assertEquals(1, b.ends);
+            // the new transition starts at the next frame
+            driver.doFrame(LAST_FRAME + 1000000);
+            assertEquals(3, a.updates);
+            assertEquals(0F, a.lastFraction, 0);
+            driver.doFrame(LAST_FRAME + 1000000 + DURATION_MILLIS * 1000000 / 2);
+            assertEquals(0.5F, a.lastFraction, 0.001F);
+        } finally {
+            cancelAll();
+        }
+    }
+
+    private RecordingListener startStyler() {
+        RecordingListener listener = new RecordingListener();
+        Styler styler = new Styler.Builder(new ColorDrawable(Color.RED), Styler.Mode.NONE)
+                .enableAnimation(DURATION_MILLIS)
+                .setUseSharedAnimationDriver(true)
+                .build();
+        stylers.add(styler);
+        styler.setAnimationListener(listener).setMode(Styler.Mode.SEPIA).updateStyle();
+        assertEquals(stylers.size(), driver.getRunningCount());
+        return listener;
+    }
+
+    private Runnable cancel(final int index) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                driver.cancel(stylers.get(index));
+            }
+        };
+    }
+
+    private void cancelAll() {
+        for (Styler styler : stylers) {
+            driver.cancel(styler);
+        }
+        stylers.clear();
+    }
+
+    private static final class RecordingListener implements Styler.AnimationListener {
+        // runs once, on the next update
+        Runnable onUpdate;
+        int updates;
+        int ends;
+        float lastFraction = -1;
+
+        @Override
+        public void onAnimationStart() {
+        }
+
+        @Override
+        public void onAnimationUpdate(float timeFraction, float progress) {
+            updates++;
+            lastFraction = timeFraction;
+            if (onUpdate != null) {
+                Runnable task = onUpdate;
+                onUpdate = null;
+                task.run();
+            }
+        }
+
+        @Override
+        public void onAnimationEnd() {
+            ends++;
+        }
+    }
+}
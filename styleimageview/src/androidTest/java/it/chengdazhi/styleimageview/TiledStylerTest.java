@@ -0,0 +1,62 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Runs TiledStyler on a real BitmapRegionDecoder, whose decoded regions are immutable.
+ */
+public class TiledStylerTest extends AndroidTestCase {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+    private static final int TILE_SIZE = 128;
+
+    public void testStyledTilesMatchMatrixOnWholeImage() throws IOException {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Random random = new Random(17);
+        for (int i = 0; i < pixels.length; i++) {
+            // opaque, so the PNG round trip through premultiplied alpha is lossless
+            pixels[i] = random.nextInt() | 0xFF000000;
+        }
+        float[] matrix = Styler.calculateStyleMatrix(Styler.Mode.SEPIA, 30, 1.2F, 1);
+        int[] expected = new int[pixels.length];
+        StyleMatrixEngine.apply(matrix, pixels, 0, expected, 0, pixels.length);
+
+        final int[] styled = new int[pixels.length];
+        final int[] tileCount = new int[1];
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(new ByteArrayInputStream(encodePng(pixels)), false);
+        try {
+            new TiledStyler(matrix, TILE_SIZE).style(decoder, new TiledStyler.TileSink() {
+                @Override
+                public void onTile(Rect region, Bitmap tile) {
+                    assertEquals(region.width(), tile.getWidth());
+                    assertEquals(region.height(), tile.getHeight());
+                    tile.getPixels(styled, region.top * WIDTH + region.left, WIDTH, 0, 0, region.width(), region.height());
+                    tileCount[0]++;
+                }
+            });
+        } finally {
+            decoder.recycle();
+        }
+        // 3 columns with a narrower last one, 2 rows with a shorter last one
+        assertEquals(6, tileCount[0]);
+        assertTrue("styled tiles differ from the whole image styled at once", Arrays.equals(expected, styled));
+    }
+
+    private static byte[] encodePng(int[] pixels) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(bitmap.compress(Bitmap.CompressFormat.PNG, 100, out));
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+}
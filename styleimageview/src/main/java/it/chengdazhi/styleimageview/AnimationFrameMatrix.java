@@ -0,0 +1,58 @@
+package it.chengdazhi.styleimageview;
+
+/**
+ * The matrix math of a Styler's animation frames, free of any android dependency so it can be checked on a plain JVM.
+ *
+ * Every frame is written into the arrays given to the constructor: the matrix currently shown,
+ * and the array backing the ColorMatrix the frame's filter is made from.
+ */
+final class AnimationFrameMatrix {
+    private final float[] start;
+    private final float[] end;
+    private final float[] current;
+    private final float[] filterMatrix;
+
+    /**
+     * @param start matrix the animation starts from
+     * @param end matrix the animation ends at
+     * @param current matrix currently shown, updated by every frame
+     * @param filterMatrix array of the ColorMatrix the frame's filter is made from, see ColorMatrix.getArray()
+     */
+    AnimationFrameMatrix(float[] start, float[] end, float[] current, float[] filterMatrix) {
+        StyleMatrixEngine.checkMatrix(start);
+        StyleMatrixEngine.checkMatrix(end);
+        StyleMatrixEngine.checkMatrix(current);
+        StyleMatrixEngine.checkMatrix(filterMatrix);
+        this.start = start;
+        this.end = end;
+        this.current = current;
+        this.filterMatrix = filterMatrix;
+    }
+
+    /**
+     * Starts an animation from the current matrix to target
+     */
+    void start(float[] target) {
+        StyleMatrixEngine.copy(current, start);
+        StyleMatrixEngine.copy(target, end);
+    }
+
+    /**
+     * Computes the frame at progress between start and end
+     * @param progress interpolated progress, 0 gives start and 1 gives end
+     */
+    void interpolate(float progress) {
+        StyleMatrixEngine.lerp(start, end, progress, current);
+        StyleMatrixEngine.copy(current, filterMatrix);
+    }
+
+    /**
+     * Shows a frame computed elsewhere, e.g. by StyleAnimationDriver
+     */
+    void set(float[] matrix) {
+        if (matrix != current) {
+            StyleMatrixEngine.copy(matrix, current);
+        }
+        StyleMatrixEngine.copy(current, filterMatrix);
+    }
+}
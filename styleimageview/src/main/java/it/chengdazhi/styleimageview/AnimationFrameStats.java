@@ -0,0 +1,92 @@
+package it.chengdazhi.styleimageview;
+
+/**
+ * Frame timing of the current or last style animation of a Styler.
+ *
+ * The frame interval is the time between two animation frames, so it includes drawing the previous frame.
+ * Comparing it with and without Styler.setUseLayerDuringAnimation(true) shows what the layer mode saves.
+ * Frames of the shared animation driver carry their vsync time, so their intervals are always recorded.
+ * Frames of a Styler's own ValueAnimator read the clock, so like apply times their intervals are only measured
+ * while the Styler has metrics set, see Styler.setMetrics(StylerMetrics). Otherwise only frames are counted.
+ */
+public class AnimationFrameStats {
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    private boolean layerMode;
+    private int frameCount;
+    private long lastFrameTime;
+    private long totalIntervalNanos;
+    private long maxIntervalNanos;
+    private long totalApplyNanos;
+    private int droppedFrameCount;
+
+    void reset(boolean layerMode) {
+        this.layerMode = layerMode;
+        frameCount = 0;
+        lastFrameTime = 0;
+        totalIntervalNanos = 0;
+        maxIntervalNanos = 0;
+        totalApplyNanos = 0;
+        droppedFrameCount = 0;
+    }
+
+    /**
+     * @param frameTime start of the frame in the System.nanoTime() time base, the vsync time when there is one,
+     *                  0 for every frame if it wasn't measured
+     * @param applyNanos time spent setting the frame's filter, 0 if it wasn't measured
+     */
+    void onFrame(long frameTime, long applyNanos) {
+        if (frameCount > 0) {
+            long interval = frameTime - lastFrameTime;
+            totalIntervalNanos += interval;
+            if (interval > maxIntervalNanos) {
+                maxIntervalNanos = interval;
+            }
+            // every whole frame slot passed without a frame was dropped
+            droppedFrameCount += Math.max(0, (int) ((interval + FRAME_NANOS / 2) / FRAME_NANOS) - 1);
+        }
+        lastFrameTime = frameTime;
+        totalApplyNanos += applyNanos;
+        frameCount++;
+    }
+
+    /**
+     * @return true if the frames were composited through a hardware layer
+     */
+    public boolean isLayerMode() {
+        return layerMode;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return frames skipped between the animation's frames, assuming a 60 fps display
+     */
+    public int getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    public float getAverageFrameIntervalMillis() {
+        return frameCount < 2 ? 0 : totalIntervalNanos / 1e6F / (frameCount - 1);
+    }
+
+    public float getMaxFrameIntervalMillis() {
+        return maxIntervalNanos / 1e6F;
+    }
+
+    /**
+     * @return average time spent on the main thread applying a frame's filter, 0 if the Styler has no metrics set
+     */
+    public float getAverageApplyMillis() {
+        return frameCount == 0 ? 0 : totalApplyNanos / 1e6F / frameCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AnimationFrameStats{layerMode=" + layerMode + ", frames=" + frameCount + ", dropped=" + droppedFrameCount
+                + ", avgInterval=" + getAverageFrameIntervalMillis() + "ms, maxInterval=" + getMaxFrameIntervalMillis()
+                + "ms, avgApply=" + getAverageApplyMillis() + "ms}";
+    }
+}
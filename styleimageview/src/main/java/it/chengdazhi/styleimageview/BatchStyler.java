@@ -0,0 +1,261 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Styles many bitmaps with one style, running decode -> style -> sink for several bitmaps at the same time.
+ *
+ * The style's matrix and filter are computed once per BatchStyler instead of once per bitmap.
+ * Only the immutable filter is shared between the workers, every bitmap is drawn with its own Paint.
+ * At most concurrency bitmaps are in flight: the next source is only decoded once a previous bitmap reached the sink,
+ * which bounds the memory a batch needs no matter how many bitmaps it has.
+ */
+public class BatchStyler {
+    private final ColorMatrixColorFilter filter;
+    private final int concurrency;
+
+    /**
+     * @param mode
+     * @param brightness if you don't want to change brightness, pass 0
+     * @param contrast if you don't want to change contrast, pass 1
+     * @param saturation if you don't want to change saturation, pass 1. If saturation is set, then the mode must be Styler.Mode.SATURATION
+     * @param concurrency max number of bitmaps processed at the same time
+     */
+    public BatchStyler(int mode, int brightness, float contrast, float saturation, int concurrency) {
+        this(Styler.calculateStyleMatrix(mode, brightness, contrast, saturation), concurrency);
+    }
+
+    /**
+     * @param matrix the final color matrix to apply
+     * @param concurrency max number of bitmaps processed at the same time
+     */
+    public BatchStyler(float[] matrix, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency can't be smaller than 1");
+        }
+        this.concurrency = concurrency;
+        filter = ColorFilterCache.get(matrix);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Styles every bitmap of bitmaps, the given bitmaps are not changed.
+     * This method blocks until the whole batch is done.
+     * @param sink receives the styled bitmaps, it is called from several threads at once
+     * @return stats of the batch
+     */
+    public Stats style(Collection<Bitmap> bitmaps, BitmapSink sink) {
+        final Iterator<Bitmap> iterator = bitmaps.iterator();
+        return run(new Iterator<BitmapSource>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public BitmapSource next() {
+                final Bitmap bitmap = iterator.next();
+                return new BitmapSource() {
+                    @Override
+                    public Bitmap decode() {
+                        return bitmap;
+                    }
+                };
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }, sink, false);
+    }
+
+    /**
+     * Decodes, styles and hands over every source of sources.
+     * Decoded bitmaps belong to the batch and are recycled once styled.
+     * This method blocks until the whole batch is done. If sources throws, the exception is rethrown
+     * once the bitmaps already started are done, so the sink is never called after this method returns.
+     * @param sink receives the styled bitmaps, it is called from several threads at once
+     * @return stats of the batch
+     */
+    public Stats style(Iterator<? extends BitmapSource> sources, BitmapSink sink) {
+        return run(sources, sink, true);
+    }
+
+    private Stats run(Iterator<? extends BitmapSource> sources, final BitmapSink sink, final boolean recycleDecoded) {
+        if (sink == null) {
+            throw new NullPointerException("sink can not be null");
+        }
+        final Stats stats = new Stats();
+        final Semaphore permits = new Semaphore(concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long startTime = System.nanoTime();
+        boolean interrupted = false;
+        try {
+            int index = 0;
+            while (sources.hasNext()) {
+                final BitmapSource source = sources.next();
+                final int bitmapIndex = index++;
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            process(bitmapIndex, source, sink, recycleDecoded, stats);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            }
+        } finally {
+            // wait for the bitmaps in flight even if sources threw, so the sink and stats are done with once this returns
+            permits.acquireUninterruptibly(concurrency);
+            executor.shutdown();
+            stats.elapsedNanos = System.nanoTime() - startTime;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return stats;
+    }
+
+    private void process(int index, BitmapSource source, BitmapSink sink, boolean recycleDecoded, Stats stats) {
+        Bitmap bitmap = null;
+        try {
+            bitmap = source.decode();
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            Bitmap styled = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            // Paint isn't thread safe, the workers draw at the same time
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            paint.setColorFilter(filter);
+            new Canvas(styled).drawBitmap(bitmap, null, new Rect(0, 0, width, height), paint);
+            if (recycleDecoded) {
+                bitmap.recycle();
+                bitmap = null;
+            }
+            sink.onBitmapStyled(index, styled);
+            stats.styledCount.incrementAndGet();
+            stats.pixelCount.addAndGet((long) width * height);
+            stats.byteCount.addAndGet(styled.getByteCount());
+        } catch (Exception e) {
+            stats.onFailure(e);
+        } catch (OutOfMemoryError e) {
+            // the likely failure for large bitmaps, it would kill the app on the pool's thread instead of being counted
+            stats.onFailure(e);
+        } finally {
+            if (recycleDecoded && bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Decode stage of the pipeline, called on a worker thread
+     */
+    public interface BitmapSource {
+        Bitmap decode() throws Exception;
+    }
+
+    /**
+     * Encode stage of the pipeline, called on a worker thread with the styled bitmap, which now belongs to the sink
+     */
+    public interface BitmapSink {
+        /**
+         * @param index position of the bitmap in the batch
+         * @param bitmap the styled bitmap
+         */
+        void onBitmapStyled(int index, Bitmap bitmap) throws Exception;
+    }
+
+    /**
+     * Throughput stats of a finished batch
+     */
+    public static class Stats {
+        private final AtomicInteger styledCount = new AtomicInteger();
+        private final AtomicInteger failedCount = new AtomicInteger();
+        private final AtomicLong pixelCount = new AtomicLong();
+        private final AtomicLong byteCount = new AtomicLong();
+        private volatile Throwable firstFailure;
+        private long elapsedNanos;
+
+        private void onFailure(Throwable e) {
+            if (failedCount.getAndIncrement() == 0) {
+                firstFailure = e;
+            }
+        }
+
+        /**
+         * @return number of bitmaps handed to the sink successfully
+         */
+        public int getStyledCount() {
+            return styledCount.get();
+        }
+
+        /**
+         * @return number of bitmaps whose decode, styling or sink failed
+         */
+        public int getFailedCount() {
+            return failedCount.get();
+        }
+
+        /**
+         * @return the first failure of the batch, e.g. an OutOfMemoryError for a bitmap too large for the heap,
+         * or null if none failed
+         */
+        public Throwable getFirstFailure() {
+            return firstFailure;
+        }
+
+        public long getPixelCount() {
+            return pixelCount.get();
+        }
+
+        /**
+         * @return total byte count of the styled bitmaps
+         */
+        public long getByteCount() {
+            return byteCount.get();
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1000000;
+        }
+
+        public float getBitmapsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getStyledCount() * 1e9F / elapsedNanos;
+        }
+
+        public float getMegapixelsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getPixelCount() * 1e3F / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{styled=" + getStyledCount() + ", failed=" + getFailedCount()
+                    + ", elapsed=" + getElapsedMillis() + "ms, " + getBitmapsPerSecond() + " bitmaps/s, "
+                    + getMegapixelsPerSecond() + " MP/s}";
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package it.chengdazhi.styleimageview;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lookup tables for color matrices that map each of R, G and B from its own channel only and keep alpha.
+ * Applying one costs three table reads per pixel instead of a 4x5 multiply.
+ * Tables are built once per matrix and cached.
+ */
+public final class ChannelLut extends PixelKernel {
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<Key, ChannelLut> CACHE = new LinkedHashMap<Key, ChannelLut>(CACHE_SIZE, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ChannelLut> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final byte[] red;
+    private final byte[] green;
+    private final byte[] blue;
+
+    private ChannelLut(float[] matrix) {
+        this(new byte[256], new byte[256], new byte[256]);
+        for (int i = 0; i < 256; i++) {
+            red[i] = (byte) StyleMatrixEngine.clamp(matrix[0] * i + matrix[4]);
+            green[i] = (byte) StyleMatrixEngine.clamp(matrix[6] * i + matrix[9]);
+            blue[i] = (byte) StyleMatrixEngine.clamp(matrix[12] * i + matrix[14]);
+        }
+    }
+
+    /**
+     * Wraps ready made tables, which must not be modified afterwards
+     */
+    ChannelLut(byte[] red, byte[] green, byte[] blue) {
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+    }
+
+    /**
+     * @return true if every output color channel only depends on the same input channel and alpha is kept as is
+     */
+    public static boolean isSeparable(float[] matrix) {
+        StyleMatrixEngine.checkMatrix(matrix);
+        return matrix[1] == 0 && matrix[2] == 0 && matrix[3] == 0
+                && matrix[5] == 0 && matrix[7] == 0 && matrix[8] == 0
+                && matrix[10] == 0 && matrix[11] == 0 && matrix[13] == 0
+                && matrix[15] == 0 && matrix[16] == 0 && matrix[17] == 0 && matrix[18] == 1 && matrix[19] == 0;
+    }
+
+    /**
+     * @param matrix a matrix for which isSeparable() returns true
+     * @return the cached tables of matrix
+     */
+    public static ChannelLut forMatrix(float[] matrix) {
+        if (!isSeparable(matrix)) {
+            throw new IllegalArgumentException("matrix is not separable by channel");
+        }
+        Key key = new Key(matrix);
+        synchronized (CACHE) {
+            ChannelLut lut = CACHE.get(key);
+            if (lut == null) {
+                lut = new ChannelLut(matrix);
+                CACHE.put(key, lut);
+            }
+            return lut;
+        }
+    }
+
+    @Override
+    public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+        StyleMatrixEngine.checkRange(src, srcOffset, count);
+        StyleMatrixEngine.checkRange(dst, dstOffset, count);
+        byte[] red = this.red;
+        byte[] green = this.green;
+        byte[] blue = this.blue;
+        for (int i = 0; i < count; i++) {
+            int color = src[srcOffset + i];
+            dst[dstOffset + i] = (color & 0xFF000000)
+                    | ((red[(color >> 16) & 0xFF] & 0xFF) << 16)
+                    | ((green[(color >> 8) & 0xFF] & 0xFF) << 8)
+                    | (blue[color & 0xFF] & 0xFF);
+        }
+    }
+
+    /**
+     * The coefficients a separable matrix is made of: scale and offset of R, G and B
+     */
+    private static final class Key {
+        private final float[] values;
+        private final int hash;
+
+        Key(float[] matrix) {
+            values = new float[] {matrix[0], matrix[4], matrix[6], matrix[9], matrix[12], matrix[14]};
+            hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(values, ((Key) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interns ColorMatrixColorFilters by matrix content, so views sharing a static style share one native filter.
+ *
+ * The cache is a fixed size table indexed by the matrix hash, a new matrix replaces whatever filter was in its slot,
+ * which bounds the cache without any bookkeeping. Looking up a cached filter allocates nothing.
+ * Filters returned are shared and must not be modified.
+ */
+public final class ColorFilterCache {
+    private static final int SIZE = 64;
+
+    private static final float[][] matrices = new float[SIZE][];
+    private static final ColorMatrixColorFilter[] filters = new ColorMatrixColorFilter[SIZE];
+    // read without the lock, lookups come from the main thread as well as background renderings
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+
+    private ColorFilterCache() {
+    }
+
+    /**
+     * @return the shared filter for matrix
+     */
+    public static ColorMatrixColorFilter get(float[] matrix) {
+        StyleMatrixEngine.checkMatrix(matrix);
+        int index = (hash(matrix) & Integer.MAX_VALUE) % SIZE;
+        synchronized (filters) {
+            float[] cachedMatrix = matrices[index];
+            if (cachedMatrix != null && contentEquals(cachedMatrix, matrix)) {
+                hitCount.incrementAndGet();
+                return filters[index];
+            }
+            missCount.incrementAndGet();
+            cachedMatrix = StyleMatrixEngine.copy(matrix, new float[StyleMatrixEngine.MATRIX_SIZE]);
+            ColorMatrixColorFilter filter = new ColorMatrixColorFilter(new ColorMatrix(cachedMatrix));
+            matrices[index] = cachedMatrix;
+            filters[index] = filter;
+            return filter;
+        }
+    }
+
+    /**
+     * @return number of lookups that returned a shared filter
+     */
+    public static long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of lookups that had to create a filter
+     */
+    public static long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Drops all cached filters, filters still set on drawables stay valid
+     */
+    public static void clear() {
+        synchronized (filters) {
+            for (int i = 0; i < SIZE; i++) {
+                matrices[i] = null;
+                filters[i] = null;
+            }
+        }
+    }
+
+    private static int hash(float[] matrix) {
+        int hash = 1;
+        for (int i = 0; i < StyleMatrixEngine.MATRIX_SIZE; i++) {
+            // adding 0 turns -0 into 0
+            hash = 31 * hash + Float.floatToIntBits(matrix[i] + 0.0F);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean contentEquals(float[] a, float[] b) {
+        for (int i = 0; i < StyleMatrixEngine.MATRIX_SIZE; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,437 @@
+package it.chengdazhi.styleimageview;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 3D color lookup table, as used by film emulations and color grades that a 4x5 matrix can't express.
+ *
+ * Tables are read from Adobe .cube files and kept as one short array of size^3 RGB entries, red changing fastest,
+ * each channel in 1/256 steps of [0, 255]. That is half the memory of floats, about 1.6 MB for the largest table,
+ * and still 256 times finer than the 8 bit output. Values outside [0, 1] in the file are clamped.
+ * Pixels are styled through getKernel(), which interpolates between the 8 surrounding table entries,
+ * and can run in parallel on a PixelStyler like any other kernel. Alpha is kept as is.
+ */
+public final class CubeLut {
+    public static final int MIN_SIZE = 2;
+    /**
+     * Largest LUT_3D_SIZE accepted, the table is allocated as soon as the size is read, so it has to be bounded
+     */
+    public static final int MAX_SIZE = 65;
+    // a table entry is the channel value times ENTRY_SCALE
+    private static final float ENTRY_SCALE = 256;
+    private static final float ENTRY_UNSCALE = 1 / ENTRY_SCALE;
+    private static final int CACHE_SIZE = 4;
+
+    private static final Map<String, CacheEntry> CACHE = new LinkedHashMap<String, CacheEntry>(CACHE_SIZE, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final String title;
+    private final int size;
+    /**
+     * Output colors as unsigned shorts of value * ENTRY_SCALE, 3 per entry at ((b * size + g) * size + r) * 3
+     */
+    private final short[] table;
+    // per input channel value: offset of the lower grid entry on that axis, and the distance to it in [0, 1]
+    private final int[] redOffsets = new int[256];
+    private final int[] greenOffsets = new int[256];
+    private final int[] blueOffsets = new int[256];
+    private final float[] redFractions = new float[256];
+    private final float[] greenFractions = new float[256];
+    private final float[] blueFractions = new float[256];
+    private PixelKernel trilinearKernel;
+    private PixelKernel tetrahedralKernel;
+
+    public enum Interpolation {
+        /**
+         * Blends all 8 surrounding entries
+         */
+        TRILINEAR,
+        /**
+         * Blends the 4 entries of the tetrahedron the color lies in, reading half the entries and keeping greys neutral
+         */
+        TETRAHEDRAL
+    }
+
+    private CubeLut(String title, int size, short[] table, float[] domainMin, float[] domainMax) {
+        this.title = title;
+        this.size = size;
+        this.table = table;
+        prepareAxis(redOffsets, redFractions, domainMin[0], domainMax[0], 3);
+        prepareAxis(greenOffsets, greenFractions, domainMin[1], domainMax[1], 3 * size);
+        prepareAxis(blueOffsets, blueFractions, domainMin[2], domainMax[2], 3 * size * size);
+    }
+
+    private void prepareAxis(int[] offsets, float[] fractions, float min, float max, int stride) {
+        for (int value = 0; value < 256; value++) {
+            float position = (value / 255F - min) / (max - min);
+            position = Math.max(0, Math.min(1, position)) * (size - 1);
+            // the last cell is used for the top of the domain, so the upper neighbour always exists
+            int low = Math.min((int) position, size - 2);
+            offsets[value] = low * stride;
+            fractions[value] = position - low;
+        }
+    }
+
+    /**
+     * Reads a .cube file, the result is cached until the file changes.
+     */
+    public static CubeLut load(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        synchronized (CACHE) {
+            CacheEntry entry = CACHE.get(path);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                return entry.lut;
+            }
+        }
+        InputStream in = new FileInputStream(file);
+        CubeLut lut;
+        try {
+            lut = parse(in);
+        } finally {
+            in.close();
+        }
+        synchronized (CACHE) {
+            CACHE.put(path, new CacheEntry(lut, lastModified, length));
+        }
+        return lut;
+    }
+
+    /**
+     * Drops every table cached by load(File)
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Reads a .cube file from in, which is not closed. The result is not cached.
+     */
+    public static CubeLut parse(InputStream in) throws IOException {
+        return parse(new InputStreamReader(in, "UTF-8"));
+    }
+
+    /**
+     * Reads .cube content from reader, which is not closed. The result is not cached.
+     */
+    public static CubeLut parse(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String title = null;
+        int size = 0;
+        float[] domainMin = {0, 0, 0};
+        float[] domainMax = {1, 1, 1};
+        float[] entry = new float[3];
+        short[] table = null;
+        int index = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.length() == 0 || line.charAt(0) == '#') {
+                continue;
+            }
+            char first = line.charAt(0);
+            if ((first >= '0' && first <= '9') || first == '-' || first == '+' || first == '.') {
+                if (table == null) {
+                    throw new IOException("line " + lineNumber + ": LUT_3D_SIZE must come before the table");
+                }
+                if (index == table.length) {
+                    throw new IOException("line " + lineNumber + ": more than " + size + "^3 entries");
+                }
+                parseTriple(line, lineNumber, entry, 0);
+                for (int i = 0; i < 3; i++) {
+                    table[index++] = encode(entry[i] * 255);
+                }
+            } else if (line.startsWith("TITLE")) {
+                title = parseTitle(line.substring("TITLE".length()).trim());
+            } else if (line.startsWith("LUT_3D_SIZE")) {
+                size = parseSize(line.substring("LUT_3D_SIZE".length()).trim(), lineNumber);
+                if (table != null) {
+                    throw new IOException("line " + lineNumber + ": LUT_3D_SIZE is given twice");
+                }
+                table = new short[size * size * size * 3];
+            } else if (line.startsWith("DOMAIN_MIN")) {
+                parseTriple(line.substring("DOMAIN_MIN".length()).trim(), lineNumber, domainMin, 0);
+            } else if (line.startsWith("DOMAIN_MAX")) {
+                parseTriple(line.substring("DOMAIN_MAX".length()).trim(), lineNumber, domainMax, 0);
+            } else if (line.startsWith("LUT_1D_SIZE")) {
+                throw new IOException("line " + lineNumber + ": 1D LUTs are not supported");
+            }
+            // other keywords are vendor extensions, which don't change how the table is read
+        }
+        if (table == null) {
+            throw new IOException("LUT_3D_SIZE is missing");
+        }
+        if (index != table.length) {
+            throw new IOException("expected " + size + "^3 entries but found " + index / 3);
+        }
+        for (int i = 0; i < 3; i++) {
+            if (!(domainMin[i] < domainMax[i])) {
+                throw new IOException("DOMAIN_MIN must be smaller than DOMAIN_MAX");
+            }
+        }
+        return new CubeLut(title, size, table, domainMin, domainMax);
+    }
+
+    /**
+     * Samples a color matrix into a table, e.g. to bake a matrix style and a LUT into one table,
+     * or to compare both paths. Pixels are assumed to be opaque and the alpha row of the matrix is ignored.
+     */
+    public static CubeLut fromMatrix(float[] matrix, int size) {
+        StyleMatrixEngine.checkMatrix(matrix);
+        checkSize(size);
+        short[] table = new short[size * size * size * 3];
+        int index = 0;
+        for (int b = 0; b < size; b++) {
+            for (int g = 0; g < size; g++) {
+                for (int r = 0; r < size; r++) {
+                    float red = r * 255F / (size - 1);
+                    float green = g * 255F / (size - 1);
+                    float blue = b * 255F / (size - 1);
+                    for (int row = 0; row < 15; row += 5) {
+                        float value = matrix[row] * red + matrix[row + 1] * green + matrix[row + 2] * blue
+                                + matrix[row + 3] * 255 + matrix[row + 4];
+                        table[index++] = encode(value);
+                    }
+                }
+            }
+        }
+        return new CubeLut(null, size, table, new float[] {0, 0, 0}, new float[] {1, 1, 1});
+    }
+
+    /**
+     * @param value channel value in [0, 255], clamped if outside
+     */
+    private static short encode(float value) {
+        return (short) Math.round(Math.max(0, Math.min(255, value)) * ENTRY_SCALE);
+    }
+
+    private static void parseTriple(String text, int lineNumber, float[] out, int offset) throws IOException {
+        String[] parts = text.split("\\s+");
+        if (parts.length != 3) {
+            throw new IOException("line " + lineNumber + ": expected 3 values");
+        }
+        try {
+            for (int i = 0; i < 3; i++) {
+                out[offset + i] = Float.parseFloat(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("line " + lineNumber + ": " + e.getMessage());
+        }
+    }
+
+    private static int parseSize(String text, int lineNumber) throws IOException {
+        int size;
+        try {
+            size = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("line " + lineNumber + ": " + e.getMessage());
+        }
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IOException("line " + lineNumber + ": LUT_3D_SIZE must be in [" + MIN_SIZE + ", " + MAX_SIZE + "]");
+        }
+        return size;
+    }
+
+    private static String parseTitle(String text) {
+        if (text.length() >= 2 && text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"') {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+    private static void checkSize(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("size must be in [" + MIN_SIZE + ", " + MAX_SIZE + "]");
+        }
+    }
+
+    /**
+     * @return the TITLE of the file, or null if it has none
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return number of entries along each axis
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the kernel using tetrahedral interpolation
+     */
+    public PixelKernel getKernel() {
+        return getKernel(Interpolation.TETRAHEDRAL);
+    }
+
+    public synchronized PixelKernel getKernel(Interpolation interpolation) {
+        if (interpolation == Interpolation.TRILINEAR) {
+            if (trilinearKernel == null) {
+                trilinearKernel = new TrilinearKernel();
+            }
+            return trilinearKernel;
+        }
+        if (tetrahedralKernel == null) {
+            tetrahedralKernel = new TetrahedralKernel();
+        }
+        return tetrahedralKernel;
+    }
+
+    private final class TrilinearKernel extends PixelKernel {
+        @Override
+        public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            StyleMatrixEngine.checkRange(src, srcOffset, count);
+            StyleMatrixEngine.checkRange(dst, dstOffset, count);
+            short[] t = table;
+            int dr = 3;
+            int dg = 3 * size;
+            int db = 3 * size * size;
+            for (int i = 0; i < count; i++) {
+                int color = src[srcOffset + i];
+                int r = (color >> 16) & 0xFF;
+                int g = (color >> 8) & 0xFF;
+                int b = color & 0xFF;
+                int base = redOffsets[r] + greenOffsets[g] + blueOffsets[b];
+                float fr = redFractions[r];
+                float fg = greenFractions[g];
+                float fb = blueFractions[b];
+                int rgb = 0;
+                for (int c = 0; c < 3; c++) {
+                    int o = base + c;
+                    int t000 = t[o] & 0xFFFF;
+                    int t100 = t[o + dr] & 0xFFFF;
+                    int t010 = t[o + dg] & 0xFFFF;
+                    int t110 = t[o + dg + dr] & 0xFFFF;
+                    int t001 = t[o + db] & 0xFFFF;
+                    int t101 = t[o + db + dr] & 0xFFFF;
+                    int t011 = t[o + db + dg] & 0xFFFF;
+                    int t111 = t[o + db + dg + dr] & 0xFFFF;
+                    float c00 = t000 + (t100 - t000) * fr;
+                    float c10 = t010 + (t110 - t010) * fr;
+                    float c01 = t001 + (t101 - t001) * fr;
+                    float c11 = t011 + (t111 - t011) * fr;
+                    float c0 = c00 + (c10 - c00) * fg;
+                    float c1 = c01 + (c11 - c01) * fg;
+                    rgb = (rgb << 8) | StyleMatrixEngine.clamp((c0 + (c1 - c0) * fb) * ENTRY_UNSCALE);
+                }
+                dst[dstOffset + i] = (color & 0xFF000000) | rgb;
+            }
+        }
+    }
+
+    private final class TetrahedralKernel extends PixelKernel {
+        @Override
+        public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            StyleMatrixEngine.checkRange(src, srcOffset, count);
+            StyleMatrixEngine.checkRange(dst, dstOffset, count);
+            short[] t = table;
+            int dr = 3;
+            int dg = 3 * size;
+            int db = 3 * size * size;
+            int dAll = dr + dg + db;
+            for (int i = 0; i < count; i++) {
+                int color = src[srcOffset + i];
+                int r = (color >> 16) & 0xFF;
+                int g = (color >> 8) & 0xFF;
+                int b = color & 0xFF;
+                int base = redOffsets[r] + greenOffsets[g] + blueOffsets[b];
+                float fr = redFractions[r];
+                float fg = greenFractions[g];
+                float fb = blueFractions[b];
+                // walk from the lower corner to the upper one along the axes in order of decreasing fraction
+                int first;
+                int second;
+                float w0;
+                float w1;
+                float w2;
+                float w3;
+                if (fr > fg) {
+                    if (fg > fb) {
+                        first = dr;
+                        second = dr + dg;
+                        w0 = 1 - fr;
+                        w1 = fr - fg;
+                        w2 = fg - fb;
+                        w3 = fb;
+                    } else if (fr > fb) {
+                        first = dr;
+                        second = dr + db;
+                        w0 = 1 - fr;
+                        w1 = fr - fb;
+                        w2 = fb - fg;
+                        w3 = fg;
+                    } else {
+                        first = db;
+                        second = db + dr;
+                        w0 = 1 - fb;
+                        w1 = fb - fr;
+                        w2 = fr - fg;
+                        w3 = fg;
+                    }
+                } else {
+                    if (fb > fg) {
+                        first = db;
+                        second = db + dg;
+                        w0 = 1 - fb;
+                        w1 = fb - fg;
+                        w2 = fg - fr;
+                        w3 = fr;
+                    } else if (fb > fr) {
+                        first = dg;
+                        second = dg + db;
+                        w0 = 1 - fg;
+                        w1 = fg - fb;
+                        w2 = fb - fr;
+                        w3 = fr;
+                    } else {
+                        first = dg;
+                        second = dg + dr;
+                        w0 = 1 - fg;
+                        w1 = fg - fr;
+                        w2 = fr - fb;
+                        w3 = fb;
+                    }
+                }
+                int rgb = 0;
+                for (int c = 0; c < 3; c++) {
+                    int o = base + c;
+                    float value = w0 * (t[o] & 0xFFFF) + w1 * (t[o + first] & 0xFFFF)
+                            + w2 * (t[o + second] & 0xFFFF) + w3 * (t[o + dAll] & 0xFFFF);
+                    rgb = (rgb << 8) | StyleMatrixEngine.clamp(value * ENTRY_UNSCALE);
+                }
+                dst[dstOffset + i] = (color & 0xFF000000) | rgb;
+            }
+        }
+    }
+
+    private static final class CacheEntry {
+        private final CubeLut lut;
+        private final long lastModified;
+        private final long length;
+
+        CacheEntry(CubeLut lut, long lastModified, long length) {
+            this.lut = lut;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
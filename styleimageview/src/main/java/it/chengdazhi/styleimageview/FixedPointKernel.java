@@ -0,0 +1,92 @@
+package it.chengdazhi.styleimageview;
+
+/**
+ * Color matrix kernel using Q16 fixed point integers instead of floats.
+ * The matrix is converted once, pixels are then styled with integer multiplies and branch-free clamping only.
+ *
+ * Each coefficient is rounded to the nearest 1/65536, so a channel drifts by at most (4 * 255 + 1) / 131072 < 0.008
+ * from the exact value before it is rounded to an integer. Every channel therefore differs from
+ * StyleMatrixEngine.apply() by at most 1.
+ */
+public final class FixedPointKernel extends PixelKernel {
+    private static final int SHIFT = 16;
+    private static final float ONE = 1 << SHIFT;
+    private static final int HALF = 1 << (SHIFT - 1);
+    /**
+     * Largest magnitude a channel may reach before the shift without overflowing an int
+     */
+    private static final float MAX_MAGNITUDE = Integer.MAX_VALUE / ONE - 1;
+
+    private final int[] coefficients = new int[StyleMatrixEngine.MATRIX_SIZE];
+
+    private FixedPointKernel(float[] matrix) {
+        for (int i = 0; i < StyleMatrixEngine.MATRIX_SIZE; i++) {
+            coefficients[i] = Math.round(matrix[i] * ONE);
+        }
+        // fold the rounding of the result into the offsets
+        for (int i = 4; i < StyleMatrixEngine.MATRIX_SIZE; i += 5) {
+            coefficients[i] += HALF;
+        }
+    }
+
+    /**
+     * @return true if no intermediate result of matrix can overflow the Q16 representation
+     */
+    public static boolean canRepresent(float[] matrix) {
+        StyleMatrixEngine.checkMatrix(matrix);
+        for (int row = 0; row < StyleMatrixEngine.MATRIX_SIZE; row += 5) {
+            float magnitude = Math.abs(matrix[row + 4]) + 1;
+            for (int i = row; i < row + 4; i++) {
+                magnitude += (Math.abs(matrix[i]) + 1 / ONE) * 255;
+            }
+            if (!(magnitude < MAX_MAGNITUDE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param matrix a matrix for which canRepresent() returns true
+     */
+    public static FixedPointKernel forMatrix(float[] matrix) {
+        if (!canRepresent(matrix)) {
+            throw new IllegalArgumentException("matrix coefficients are too large for Q16 fixed point");
+        }
+        return new FixedPointKernel(matrix);
+    }
+
+    @Override
+    public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+        StyleMatrixEngine.checkRange(src, srcOffset, count);
+        StyleMatrixEngine.checkRange(dst, dstOffset, count);
+        int[] c = coefficients;
+        int c0 = c[0], c1 = c[1], c2 = c[2], c3 = c[3], c4 = c[4];
+        int c5 = c[5], c6 = c[6], c7 = c[7], c8 = c[8], c9 = c[9];
+        int c10 = c[10], c11 = c[11], c12 = c[12], c13 = c[13], c14 = c[14];
+        int c15 = c[15], c16 = c[16], c17 = c[17], c18 = c[18], c19 = c[19];
+        for (int i = 0; i < count; i++) {
+            int color = src[srcOffset + i];
+            int a = color >>> 24;
+            int r = (color >> 16) & 0xFF;
+            int g = (color >> 8) & 0xFF;
+            int b = color & 0xFF;
+            int newR = clamp((c0 * r + c1 * g + c2 * b + c3 * a + c4) >> SHIFT);
+            int newG = clamp((c5 * r + c6 * g + c7 * b + c8 * a + c9) >> SHIFT);
+            int newB = clamp((c10 * r + c11 * g + c12 * b + c13 * a + c14) >> SHIFT);
+            int newA = clamp((c15 * r + c16 * g + c17 * b + c18 * a + c19) >> SHIFT);
+            dst[dstOffset + i] = (newA << 24) | (newR << 16) | (newG << 8) | newB;
+        }
+    }
+
+    /**
+     * Clamps value to [0, 255] without branches
+     */
+    private static int clamp(int value) {
+        // negative values become 0
+        value &= ~(value >> 31);
+        // values above 255 become all ones, then masked to 255
+        value |= (255 - value) >> 31;
+        return value & 0xFF;
+    }
+}
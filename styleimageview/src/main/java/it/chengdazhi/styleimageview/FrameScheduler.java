@@ -0,0 +1,102 @@
+package it.chengdazhi.styleimageview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Runs a task once on the next frame, however often it is scheduled before that frame.
+ * Uses Choreographer on Jelly Bean and above, so the task runs at most once per vsync.
+ * Before Jelly Bean there is no frame callback and a main thread Handler is used instead, posting 16 ms ahead,
+ * so the task runs at most once per 16 ms but is not aligned with the display's vsync.
+ * Must be used on the main thread.
+ */
+final class FrameScheduler {
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final long FALLBACK_FRAME_DELAY_MILLIS = 16;
+
+    private final Callback callback;
+    private final Runnable fallbackTask;
+    // a Choreographer.FrameCallback, typed as Object so this class still loads before Jelly Bean
+    private Object frameCallback;
+    private boolean scheduled;
+
+    FrameScheduler(Callback callback) {
+        this.callback = callback;
+        fallbackTask = new Runnable() {
+            @Override
+            public void run() {
+                runScheduled(System.nanoTime());
+            }
+        };
+    }
+
+    void schedule() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (frameCallback == null) {
+                frameCallback = FrameCallbacks.create(this);
+            }
+            FrameCallbacks.post(frameCallback);
+        } else {
+            // posting without a delay would run the task again right away, spinning the looper
+            MAIN_HANDLER.postDelayed(fallbackTask, FALLBACK_FRAME_DELAY_MILLIS);
+        }
+    }
+
+    void cancel() {
+        if (!scheduled) {
+            return;
+        }
+        scheduled = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            FrameCallbacks.remove(frameCallback);
+        } else {
+            MAIN_HANDLER.removeCallbacks(fallbackTask);
+        }
+    }
+
+    boolean isScheduled() {
+        return scheduled;
+    }
+
+    private void runScheduled(long frameTimeNanos) {
+        if (!scheduled) {
+            return;
+        }
+        scheduled = false;
+        callback.doFrame(frameTimeNanos);
+    }
+
+    interface Callback {
+        /**
+         * @param frameTimeNanos start of the frame in the System.nanoTime() time base, the vsync time when there is one
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbacks {
+        static Object create(final FrameScheduler scheduler) {
+            return new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    scheduler.runScheduled(frameTimeNanos);
+                }
+            };
+        }
+
+        static void post(Object frameCallback) {
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+        }
+
+        static void remove(Object frameCallback) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+        }
+    }
+}
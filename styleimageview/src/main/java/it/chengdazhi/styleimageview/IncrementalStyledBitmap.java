@@ -0,0 +1,172 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A styled copy of a bitmap that is kept up to date as the source is drawn on, e.g. by an annotation or collage editor.
+ *
+ * Report the regions you changed with invalidate(Rect), getBitmap() then re-styles only those regions into the
+ * retained output, so a small edit on a large canvas costs time proportional to the edited area
+ * instead of a full addStyleToBitmap(). Pixels are styled on the CPU, by the given PixelStyler if there is one.
+ * This class is not thread safe, use it from one thread at a time.
+ */
+public class IncrementalStyledBitmap {
+    /**
+     * Beyond this many separate dirty regions they are merged into their bounds
+     */
+    private static final int MAX_DIRTY_REGIONS = 8;
+    private static final int MAX_PIXELS_PER_PASS = 1 << 20;
+
+    private final Bitmap source;
+    private final Bitmap output;
+    private final PixelStyler pixelStyler;
+    private final List<Rect> dirtyRegions = new ArrayList<Rect>();
+    private PixelKernel kernel;
+    private int[] pixels = new int[0];
+
+    /**
+     * @param source bitmap that is edited, it is never modified by this class
+     * @param mode
+     * @param brightness if you don't want to change brightness, pass 0
+     * @param contrast if you don't want to change contrast, pass 1
+     * @param saturation if you don't want to change saturation, pass 1. If saturation is set, then the mode must be Styler.Mode.SATURATION
+     * @param pixelStyler PixelStyler to style large regions on, or null to style on the calling thread
+     */
+    public IncrementalStyledBitmap(Bitmap source, int mode, int brightness, float contrast, float saturation, PixelStyler pixelStyler) {
+        this(source, Styler.calculateStyleMatrix(mode, brightness, contrast, saturation), pixelStyler);
+    }
+
+    /**
+     * @param source bitmap that is edited, it is never modified by this class
+     * @param matrix the final color matrix to apply
+     * @param pixelStyler PixelStyler to style large regions on, or null to style on the calling thread
+     */
+    public IncrementalStyledBitmap(Bitmap source, float[] matrix, PixelStyler pixelStyler) {
+        if (source == null) {
+            throw new NullPointerException("source can not be null");
+        }
+        this.source = source;
+        this.pixelStyler = pixelStyler;
+        output = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+        setMatrix(matrix);
+    }
+
+    /**
+     * Changes the style, the whole output is re-styled on the next getBitmap()
+     */
+    public void setStyle(int mode, int brightness, float contrast, float saturation) {
+        setMatrix(Styler.calculateStyleMatrix(mode, brightness, contrast, saturation));
+    }
+
+    public void setMatrix(float[] matrix) {
+        kernel = pixelStyler != null ? pixelStyler.kernelFor(matrix) : PixelKernel.forMatrix(matrix);
+        invalidate();
+    }
+
+    /**
+     * Marks the whole source as changed
+     */
+    public void invalidate() {
+        dirtyRegions.clear();
+        dirtyRegions.add(new Rect(0, 0, source.getWidth(), source.getHeight()));
+    }
+
+    public void invalidate(Rect dirty) {
+        invalidate(dirty.left, dirty.top, dirty.right, dirty.bottom);
+    }
+
+    /**
+     * Marks a region of the source as changed, it is clipped to the source's bounds
+     */
+    public void invalidate(int left, int top, int right, int bottom) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, source.getWidth());
+        bottom = Math.min(bottom, source.getHeight());
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        Rect region = new Rect(left, top, right, bottom);
+        // absorb every region the new one overlaps, until it overlaps none
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = dirtyRegions.size() - 1; i >= 0; i--) {
+                Rect other = dirtyRegions.get(i);
+                if (overlaps(region, other)) {
+                    region.union(other);
+                    dirtyRegions.remove(i);
+                    merged = true;
+                }
+            }
+        }
+        dirtyRegions.add(region);
+        if (dirtyRegions.size() > MAX_DIRTY_REGIONS) {
+            Rect bounds = dirtyRegions.get(0);
+            for (int i = 1; i < dirtyRegions.size(); i++) {
+                bounds.union(dirtyRegions.get(i));
+            }
+            dirtyRegions.clear();
+            dirtyRegions.add(bounds);
+        }
+    }
+
+    private static boolean overlaps(Rect a, Rect b) {
+        return a.left < b.right && b.left < a.right && a.top < b.bottom && b.top < a.bottom;
+    }
+
+    /**
+     * @return true if getBitmap() has regions to re-style
+     */
+    public boolean isDirty() {
+        return !dirtyRegions.isEmpty();
+    }
+
+    /**
+     * Re-styles the regions changed since the last call and returns the output.
+     * The output is the same bitmap every time and belongs to this object, don't modify or recycle it.
+     * @return the styled bitmap
+     */
+    public Bitmap getBitmap() {
+        for (int i = 0; i < dirtyRegions.size(); i++) {
+            restyle(dirtyRegions.get(i));
+        }
+        dirtyRegions.clear();
+        return output;
+    }
+
+    /**
+     * Styles region a few rows at a time, so the buffer stays small even when the whole bitmap is dirty
+     */
+    private void restyle(Rect region) {
+        int width = region.right - region.left;
+        int height = region.bottom - region.top;
+        int rowsPerPass = Math.max(1, Math.min(height, MAX_PIXELS_PER_PASS / width));
+        if (pixels.length < width * rowsPerPass) {
+            pixels = new int[width * rowsPerPass];
+        }
+        for (int y = region.top; y < region.bottom; y += rowsPerPass) {
+            int rows = Math.min(rowsPerPass, region.bottom - y);
+            source.getPixels(pixels, 0, width, region.left, y, width, rows);
+            if (pixelStyler != null) {
+                pixelStyler.apply(kernel, pixels, pixels, width, rows);
+            } else {
+                kernel.apply(pixels, 0, pixels, 0, width * rows);
+            }
+            output.setPixels(pixels, 0, width, region.left, y, width, rows);
+        }
+    }
+
+    /**
+     * Releases the output, this object can't be used afterwards
+     */
+    public void recycle() {
+        dirtyRegions.clear();
+        pixels = new int[0];
+        output.recycle();
+    }
+}
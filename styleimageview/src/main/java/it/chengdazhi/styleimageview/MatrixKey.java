@@ -0,0 +1,32 @@
+package it.chengdazhi.styleimageview;
+
+import java.util.Arrays;
+
+/**
+ * Hash key of a color matrix' content.
+ * The matrix is copied and normalized, so equal looking matrices like ones differing only in -0 and 0 are equal keys.
+ */
+final class MatrixKey {
+    private final float[] values;
+    private final int hash;
+
+    MatrixKey(float[] matrix) {
+        StyleMatrixEngine.checkMatrix(matrix);
+        values = new float[StyleMatrixEngine.MATRIX_SIZE];
+        for (int i = 0; i < StyleMatrixEngine.MATRIX_SIZE; i++) {
+            // adding 0 turns -0 into 0
+            values[i] = matrix[i] + 0.0F;
+        }
+        hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof MatrixKey && hash == ((MatrixKey) o).hash && Arrays.equals(values, ((MatrixKey) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
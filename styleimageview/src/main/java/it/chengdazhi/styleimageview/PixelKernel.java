@@ -0,0 +1,49 @@
+package it.chengdazhi.styleimageview;
+
+/**
+ * A prepared per-pixel transform of ARGB pixels.
+ * Kernels are immutable and can be shared by many threads.
+ */
+public abstract class PixelKernel {
+
+    /**
+     * Returns the fastest kernel for the given color matrix.
+     * Matrices that treat each channel independently, like Styler.Mode.INVERT or a brightness and contrast only style,
+     * are applied through cached lookup tables, other matrices fall back to a full matrix multiply.
+     */
+    public static PixelKernel forMatrix(float[] matrix) {
+        return forMatrix(matrix, false);
+    }
+
+    /**
+     * @param fixedPoint if true, matrices that need a full multiply use FixedPointKernel when it can represent them,
+     *                   trading at most 1 of error per channel for integer only arithmetic
+     */
+    public static PixelKernel forMatrix(float[] matrix, boolean fixedPoint) {
+        if (ChannelLut.isSeparable(matrix)) {
+            return ChannelLut.forMatrix(matrix);
+        }
+        if (fixedPoint && FixedPointKernel.canRepresent(matrix)) {
+            return FixedPointKernel.forMatrix(matrix);
+        }
+        return new MatrixKernel(matrix);
+    }
+
+    /**
+     * Transforms count pixels of src and writes them into dst, src and dst may be the same array.
+     */
+    public abstract void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count);
+
+    private static class MatrixKernel extends PixelKernel {
+        private final float[] matrix;
+
+        MatrixKernel(float[] matrix) {
+            this.matrix = StyleMatrixEngine.copy(matrix, new float[StyleMatrixEngine.MATRIX_SIZE]);
+        }
+
+        @Override
+        public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            StyleMatrixEngine.apply(matrix, src, srcOffset, dst, dstOffset, count);
+        }
+    }
+}
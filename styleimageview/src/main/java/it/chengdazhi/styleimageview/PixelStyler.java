@@ -0,0 +1,234 @@
+package it.chengdazhi.styleimageview;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies a color matrix or any PixelKernel to ARGB pixel buffers on the CPU, splitting the image into row stripes
+ * that run in parallel. The output is identical to applying the kernel to the whole buffer at once.
+ *
+ * This class has no android dependency. A PixelStyler owns its worker threads, call shutdown() when
+ * it is no longer needed.
+ */
+public class PixelStyler {
+    private static final int MIN_ROWS_PER_STRIPE = 16;
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final int parallelism;
+    private final boolean fixedPoint;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a PixelStyler using one thread per available processor
+     */
+    public PixelStyler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism max number of stripes styled at the same time, the calling thread styles one of them
+     */
+    public PixelStyler(int parallelism) {
+        this(parallelism, false);
+    }
+
+    /**
+     * @param parallelism max number of stripes styled at the same time, the calling thread styles one of them
+     * @param fixedPoint whether matrices are applied with FixedPointKernel, see PixelKernel.forMatrix(float[], boolean)
+     */
+    public PixelStyler(int parallelism, boolean fixedPoint) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism can't be smaller than 1");
+        }
+        this.parallelism = parallelism;
+        this.fixedPoint = fixedPoint;
+        if (parallelism > 1) {
+            final int poolNumber = POOL_COUNT.incrementAndGet();
+            executor = Executors.newFixedThreadPool(parallelism - 1, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PixelStyler-" + poolNumber + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    /**
+     * @return the kernel this PixelStyler applies for matrix
+     */
+    public PixelKernel kernelFor(float[] matrix) {
+        return PixelKernel.forMatrix(matrix, fixedPoint);
+    }
+
+    /**
+     * Styles a width x height image stored row by row without padding. src and dst may be the same array.
+     */
+    public void apply(float[] matrix, int[] src, int[] dst, int width, int height) {
+        apply(kernelFor(matrix), src, 0, dst, 0, width, height);
+    }
+
+    public void apply(float[] matrix, int[] src, int srcOffset, int[] dst, int dstOffset, int width, int height) {
+        apply(kernelFor(matrix), src, srcOffset, dst, dstOffset, width, height);
+    }
+
+    /**
+     * Styles the pixels between src's position and limit into dst starting at dst's position.
+     * Positions of the given buffers are not changed. src and dst may be the same buffer.
+     */
+    public void apply(float[] matrix, IntBuffer src, IntBuffer dst, int width, int height) {
+        apply(kernelFor(matrix), src, dst, width, height);
+    }
+
+    public void apply(PixelKernel kernel, int[] src, int[] dst, int width, int height) {
+        apply(kernel, src, 0, dst, 0, width, height);
+    }
+
+    public void apply(final PixelKernel kernel, final int[] src, final int srcOffset, final int[] dst, final int dstOffset,
+                      final int width, int height) {
+        checkSize(width, height);
+        StyleMatrixEngine.checkRange(src, srcOffset, width * height);
+        StyleMatrixEngine.checkRange(dst, dstOffset, width * height);
+        run(height, new Stripe() {
+            @Override
+            public void style(int startRow, int endRow) {
+                int start = startRow * width;
+                kernel.apply(src, srcOffset + start, dst, dstOffset + start, (endRow - startRow) * width);
+            }
+        });
+    }
+
+    public void apply(final PixelKernel kernel, final IntBuffer src, final IntBuffer dst, final int width, int height) {
+        checkSize(width, height);
+        if (src.remaining() < width * height || dst.remaining() < width * height) {
+            throw new IllegalArgumentException("buffers must have at least " + width * height + " pixels remaining");
+        }
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("dst can't be read only");
+        }
+        if (src.hasArray() && dst.hasArray()) {
+            apply(kernel, src.array(), src.arrayOffset() + src.position(),
+                    dst.array(), dst.arrayOffset() + dst.position(), width, height);
+            return;
+        }
+        final int srcPosition = src.position();
+        final int dstPosition = dst.position();
+        run(height, new Stripe() {
+            @Override
+            public void style(int startRow, int endRow) {
+                IntBuffer stripeSrc = src.duplicate();
+                IntBuffer stripeDst = dst.duplicate();
+                int[] row = new int[width];
+                for (int y = startRow; y < endRow; y++) {
+                    stripeSrc.position(srcPosition + y * width);
+                    stripeSrc.get(row);
+                    kernel.apply(row, 0, row, 0, width);
+                    stripeDst.position(dstPosition + y * width);
+                    stripeDst.put(row);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the worker threads, stripes already running are finished.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void run(int height, final Stripe stripe) {
+        int stripeCount = Math.max(1, Math.min(parallelism, height / MIN_ROWS_PER_STRIPE));
+        if (stripeCount == 1) {
+            stripe.style(0, height);
+            return;
+        }
+        int rowsPerStripe = (height + stripeCount - 1) / stripeCount;
+        List<Future<?>> futures = new ArrayList<>(stripeCount - 1);
+        Throwable failure = null;
+        try {
+            for (int startRow = rowsPerStripe; startRow < height; startRow += rowsPerStripe) {
+                final int start = startRow;
+                final int end = Math.min(height, startRow + rowsPerStripe);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        stripe.style(start, end);
+                    }
+                }));
+            }
+            stripe.style(0, rowsPerStripe);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        // the workers write into the caller's buffers, so they must all be done before this returns, even by throwing
+        waitFor(futures, failure);
+    }
+
+    /**
+     * Waits for every future, then throws failure if there is one, or else what the first failed stripe threw
+     */
+    private static void waitFor(List<Future<?>> futures, Throwable failure) {
+        boolean interrupted = false;
+        try {
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be bigger than 0");
+        }
+    }
+
+    private interface Stripe {
+        void style(int startRow, int endRow);
+    }
+}
@@ -0,0 +1,157 @@
+package it.chengdazhi.styleimageview;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Styles raw, uncompressed pixel data of any size, either streamed a few rows at a time or memory mapped.
+ * Pixels are 4 bytes each, in the byte order of the given Format. This class has no android dependency.
+ *
+ * Kernels for Styler's modes are made from the matrix StyleMatrixEngine computes for the mode, for example
+ * PixelKernel.forMatrix(StyleMatrixEngine.calculate(StylePresets.getId("sepia"), brightness, contrast, 1, new float[20])).
+ */
+public final class RawPixelStyler {
+    private static final int MAX_PIXELS_PER_STRIPE = 1 << 18;
+    private static final long MAX_BYTES_PER_MAPPING = 1 << 26;
+
+    public enum Format {
+        /**
+         * bytes A, R, G, B
+         */
+        ARGB,
+        /**
+         * bytes R, G, B, A
+         */
+        RGBA
+    }
+
+    private RawPixelStyler() {
+    }
+
+    /**
+     * Reads width pixel wide rows from in until its end, styles them and writes them to out.
+     * Only a stripe of rows is held in memory at once.
+     * @return number of rows styled
+     * @throws EOFException if in ends in the middle of a row
+     */
+    public static long style(ReadableByteChannel in, WritableByteChannel out, Format format, int width, PixelKernel kernel)
+            throws IOException {
+        if (width <= 0) {
+            throw new IllegalArgumentException("width must be bigger than 0");
+        }
+        int rowsPerStripe = Math.max(1, MAX_PIXELS_PER_STRIPE / width);
+        ByteBuffer buffer = ByteBuffer.allocate(width * rowsPerStripe * 4).order(ByteOrder.BIG_ENDIAN);
+        int[] pixels = new int[width * rowsPerStripe];
+        long rows = 0;
+        boolean end = false;
+        while (!end) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer) < 0) {
+                    end = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            int bytes = buffer.remaining();
+            if (bytes % (width * 4) != 0) {
+                throw new EOFException("input ended in the middle of a row");
+            }
+            int count = bytes / 4;
+            IntBuffer intBuffer = buffer.asIntBuffer();
+            intBuffer.get(pixels, 0, count);
+            styleStripe(pixels, count, format, kernel);
+            intBuffer.clear();
+            intBuffer.put(pixels, 0, count);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            rows += count / width;
+        }
+        return rows;
+    }
+
+    /**
+     * Styles the raw image file behind channel in place through memory mapping, the image is never copied to the heap.
+     * Mapped chunks are styled in parallel by pixelStyler.
+     * @param channel a channel opened for reading and writing, whose size is a multiple of width * 4 bytes
+     */
+    public static void styleMapped(FileChannel channel, Format format, int width, PixelKernel kernel, PixelStyler pixelStyler)
+            throws IOException {
+        styleMapped(channel, channel, format, width, kernel, pixelStyler);
+    }
+
+    /**
+     * Styles the raw image file behind in into the file behind out through memory mapping,
+     * out grows to the size of in if needed. Mapped chunks are styled in parallel by pixelStyler.
+     * @param in a channel opened for reading, whose size is a multiple of width * 4 bytes
+     * @param out a channel opened for reading and writing, may be in to style the file in place
+     */
+    public static void styleMapped(FileChannel in, FileChannel out, Format format, int width, PixelKernel kernel,
+                                   PixelStyler pixelStyler) throws IOException {
+        if (width <= 0) {
+            throw new IllegalArgumentException("width must be bigger than 0");
+        }
+        long rowBytes = width * 4L;
+        long size = in.size();
+        if (size % rowBytes != 0) {
+            throw new IllegalArgumentException("file size " + size + " is not a multiple of the row size " + rowBytes);
+        }
+        PixelKernel formatKernel = forFormat(kernel, format);
+        long bytesPerMapping = Math.max(1, MAX_BYTES_PER_MAPPING / rowBytes) * rowBytes;
+        for (long position = 0; position < size; position += bytesPerMapping) {
+            long bytes = Math.min(bytesPerMapping, size - position);
+            int rows = (int) (bytes / rowBytes);
+            if (in == out) {
+                IntBuffer pixels = in.map(FileChannel.MapMode.READ_WRITE, position, bytes).asIntBuffer();
+                pixelStyler.apply(formatKernel, pixels, pixels, width, rows);
+            } else {
+                IntBuffer src = in.map(FileChannel.MapMode.READ_ONLY, position, bytes).asIntBuffer();
+                MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+                pixelStyler.apply(formatKernel, src, dst.asIntBuffer(), width, rows);
+            }
+        }
+    }
+
+    static void styleStripe(int[] pixels, int count, Format format, PixelKernel kernel) {
+        forFormat(kernel, format).apply(pixels, 0, pixels, 0, count);
+    }
+
+    /**
+     * @return kernel applying kernel to pixels read as big endian ints of the given format
+     */
+    static PixelKernel forFormat(PixelKernel kernel, Format format) {
+        return format == Format.RGBA ? new RgbaKernel(kernel) : kernel;
+    }
+
+    /**
+     * Rotates RGBA ints to ARGB for the wrapped kernel and back
+     */
+    private static final class RgbaKernel extends PixelKernel {
+        private final PixelKernel kernel;
+
+        RgbaKernel(PixelKernel kernel) {
+            this.kernel = kernel;
+        }
+
+        @Override
+        public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            StyleMatrixEngine.checkRange(src, srcOffset, count);
+            StyleMatrixEngine.checkRange(dst, dstOffset, count);
+            for (int i = 0; i < count; i++) {
+                dst[dstOffset + i] = Integer.rotateRight(src[srcOffset + i], 8);
+            }
+            kernel.apply(dst, dstOffset, dst, dstOffset, count);
+            for (int i = dstOffset; i < dstOffset + count; i++) {
+                dst[i] = Integer.rotateLeft(dst[i], 8);
+            }
+        }
+    }
+}
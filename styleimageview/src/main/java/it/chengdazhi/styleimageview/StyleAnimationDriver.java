@@ -0,0 +1,162 @@
+package it.chengdazhi.styleimageview;
+
+import android.view.animation.Interpolator;
+
+import java.util.Arrays;
+
+/**
+ * Drives the animations of every Styler using it from a single frame callback, instead of one ValueAnimator each.
+ *
+ * Start and end matrices of all running transitions live in two flat float arrays, 20 floats per transition,
+ * so a frame costs one pass over the running transitions and nothing is allocated while animating.
+ * Every transition is timed by the frame time of the callback: a transition starts at the first frame after
+ * start() and all transitions of a frame see the same time. Must be used on the main thread.
+ */
+final class StyleAnimationDriver {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int SIZE = StyleMatrixEngine.MATRIX_SIZE;
+    // start time of a transition that hasn't had its first frame yet
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static StyleAnimationDriver instance;
+
+    private final FrameScheduler frameScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            StyleAnimationDriver.this.doFrame(frameTimeNanos);
+        }
+    });
+    private final float[] frameMatrix = new float[SIZE];
+    private Styler[] stylers = new Styler[INITIAL_CAPACITY];
+    private Interpolator[] interpolators = new Interpolator[INITIAL_CAPACITY];
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    private long[] durations = new long[INITIAL_CAPACITY];
+    private float[] startMatrices = new float[INITIAL_CAPACITY * SIZE];
+    private float[] endMatrices = new float[INITIAL_CAPACITY * SIZE];
+    private int count;
+
+    static StyleAnimationDriver getInstance() {
+        if (instance == null) {
+            instance = new StyleAnimationDriver();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a transition of styler, replacing the one it has running
+     * @param durationMillis
+     */
+    void start(Styler styler, float[] startMatrix, float[] endMatrix, long durationMillis, Interpolator interpolator) {
+        int index = indexOf(styler);
+        if (index < 0) {
+            ensureCapacity(count + 1);
+            index = count++;
+        }
+        stylers[index] = styler;
+        interpolators[index] = interpolator;
+        startTimes[index] = NOT_STARTED;
+        durations[index] = durationMillis * 1000000;
+        System.arraycopy(startMatrix, 0, startMatrices, index * SIZE, SIZE);
+        System.arraycopy(endMatrix, 0, endMatrices, index * SIZE, SIZE);
+        frameScheduler.schedule();
+    }
+
+    /**
+     * Stops the transition of styler without finishing it
+     */
+    void cancel(Styler styler) {
+        int index = indexOf(styler);
+        if (index >= 0) {
+            remove(index);
+        }
+        if (count == 0) {
+            frameScheduler.cancel();
+        }
+    }
+
+    /**
+     * @return number of running transitions
+     */
+    int getRunningCount() {
+        return count;
+    }
+
+    /**
+     * Advances every running transition to the frame starting at frameTimeNanos
+     */
+    void doFrame(long frameTimeNanos) {
+        int i = 0;
+        while (i < count) {
+            Styler styler = stylers[i];
+            if (startTimes[i] == NOT_STARTED) {
+                startTimes[i] = frameTimeNanos;
+            }
+            long startTime = startTimes[i];
+            long duration = durations[i];
+            long elapsed = frameTimeNanos - startTime;
+            float fraction = duration <= 0 || elapsed >= duration ? 1 : (float) elapsed / duration;
+            float progress = interpolators[i].getInterpolation(fraction);
+            float remaining = 1 - progress;
+            int offset = i * SIZE;
+            for (int j = 0; j < SIZE; j++) {
+                frameMatrix[j] = (startMatrices[offset + j] * remaining) + (endMatrices[offset + j] * progress);
+            }
+            styler.onSharedAnimationFrame(frameMatrix, fraction, progress, frameTimeNanos);
+            if (i >= count || stylers[i] != styler || startTimes[i] != startTime) {
+                // a listener canceled or restarted the transition, the slot was already updated
+                if (i < count && stylers[i] == styler) {
+                    i++;
+                }
+                continue;
+            }
+            if (fraction >= 1) {
+                remove(i);
+                styler.onSharedAnimationEnd();
+            } else {
+                i++;
+            }
+        }
+        if (count > 0) {
+            frameScheduler.schedule();
+        }
+    }
+
+    private int indexOf(Styler styler) {
+        for (int i = 0; i < count; i++) {
+            if (stylers[i] == styler) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the last transition into index
+     */
+    private void remove(int index) {
+        int last = --count;
+        if (index != last) {
+            stylers[index] = stylers[last];
+            interpolators[index] = interpolators[last];
+            startTimes[index] = startTimes[last];
+            durations[index] = durations[last];
+            System.arraycopy(startMatrices, last * SIZE, startMatrices, index * SIZE, SIZE);
+            System.arraycopy(endMatrices, last * SIZE, endMatrices, index * SIZE, SIZE);
+        }
+        stylers[last] = null;
+        interpolators[last] = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= stylers.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, stylers.length * 2);
+        stylers = Arrays.copyOf(stylers, newCapacity);
+        interpolators = Arrays.copyOf(interpolators, newCapacity);
+        startTimes = Arrays.copyOf(startTimes, newCapacity);
+        durations = Arrays.copyOf(durations, newCapacity);
+        startMatrices = Arrays.copyOf(startMatrices, newCapacity * SIZE);
+        endMatrices = Arrays.copyOf(endMatrices, newCapacity * SIZE);
+    }
+}
@@ -0,0 +1,90 @@
+package it.chengdazhi.styleimageview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of color matrices multiplied into one, so any number of stacked effects costs a single rendering pass.
+ * Matrices are applied in the order they are added. The product is computed once and cached until the chain changes.
+ * This class has no android dependency and is not thread safe.
+ */
+public class StyleChain {
+    private final List<float[]> matrices = new ArrayList<>();
+    private final float[] product = StyleMatrixs.common();
+    private final float[] scratch = new float[StyleMatrixEngine.MATRIX_SIZE];
+    private boolean dirty;
+
+    /**
+     * Appends matrix, it is applied after the matrices already in the chain.
+     * The matrix is copied, changing it afterwards doesn't affect the chain.
+     * @return this chain
+     */
+    public StyleChain add(float[] matrix) {
+        matrices.add(StyleMatrixEngine.copy(matrix, new float[StyleMatrixEngine.MATRIX_SIZE]));
+        dirty = true;
+        return this;
+    }
+
+    /**
+     * Appends a brightness and contrast step
+     * @param brightness range [-255, 255], 0 means no change
+     * @param contrast 1 means no change
+     * @return this chain
+     */
+    public StyleChain addBrightnessAndContrast(int brightness, float contrast) {
+        return add(StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.common(), brightness, contrast));
+    }
+
+    /**
+     * Appends a saturation step
+     * @param saturation 1 means no change, 0 gives grey scale
+     * @return this chain
+     */
+    public StyleChain addSaturation(float saturation) {
+        return add(StyleMatrixs.saturation(saturation));
+    }
+
+    /**
+     * Appends every matrix of chain
+     * @return this chain
+     */
+    public StyleChain addAll(StyleChain chain) {
+        for (float[] matrix : chain.matrices) {
+            add(matrix);
+        }
+        return this;
+    }
+
+    public StyleChain clear() {
+        matrices.clear();
+        dirty = true;
+        return this;
+    }
+
+    public int size() {
+        return matrices.size();
+    }
+
+    /**
+     * Copies the product of the chain into out, an empty chain gives the identity matrix
+     * @return out
+     */
+    public float[] getMatrix(float[] out) {
+        if (dirty) {
+            StyleMatrixEngine.identity(product);
+            for (float[] matrix : matrices) {
+                StyleMatrixEngine.concat(matrix, product, scratch);
+                StyleMatrixEngine.copy(scratch, product);
+            }
+            dirty = false;
+        }
+        return StyleMatrixEngine.copy(product, out);
+    }
+
+    /**
+     * @return a new array holding the product of the chain
+     */
+    public float[] getMatrix() {
+        return getMatrix(new float[StyleMatrixEngine.MATRIX_SIZE]);
+    }
+}
@@ -7,6 +7,8 @@ import android.util.AttributeSet;
 import android.view.animation.Interpolator;
 import android.widget.ImageView;
 
+import java.util.concurrent.Executor;
+
 /**
  * Created by chengdazhi on 8/10/16.
  */
@@ -48,6 +50,7 @@ public class StyleImageView extends ImageView {
                 styler.setSaturation(saturation);
             }
         }
+        styler.setCoalesceUpdates(typedArray.getBoolean(R.styleable.StyleImageView_coalesce_updates, false));
         boolean enableAnimation = typedArray.getBoolean(R.styleable.StyleImageView_enable_animation, false);
         long animationDuration = typedArray.getInt(R.styleable.StyleImageView_animation_duration, 0);
         if (!enableAnimation && animationDuration != 0) {
@@ -112,6 +115,101 @@ public class StyleImageView extends ImageView {
         return this;
     }
 
+    public boolean isCoalescingUpdates() {
+        return styler.isCoalescingUpdates();
+    }
+
+    /**
+     * When turned on, updateStyle() applies the style at most once per frame.
+     * See Styler.setCoalesceUpdates(boolean)
+     * @param coalesceUpdates
+     * @return
+     */
+    public StyleImageView setCoalesceUpdates(boolean coalesceUpdates) {
+        styler.setCoalesceUpdates(coalesceUpdates);
+        return this;
+    }
+
+    /**
+     * Sets where this view's Styler reports its timing and allocation metrics.
+     * See Styler.setMetrics(StylerMetrics)
+     * @param metrics
+     * @return
+     */
+    public StyleImageView setMetrics(StylerMetrics metrics) {
+        styler.setMetrics(metrics);
+        return this;
+    }
+
+    public StylerMetrics getMetrics() {
+        return styler.getMetrics();
+    }
+
+    public boolean isUsingLayerDuringAnimation() {
+        return styler.isUsingLayerDuringAnimation();
+    }
+
+    /**
+     * When turned on, animation frames are applied through a hardware layer instead of redrawing the image.
+     * See Styler.setUseLayerDuringAnimation(boolean)
+     * @param useLayerDuringAnimation
+     * @return
+     */
+    public StyleImageView setUseLayerDuringAnimation(boolean useLayerDuringAnimation) {
+        styler.setUseLayerDuringAnimation(useLayerDuringAnimation);
+        return this;
+    }
+
+    /**
+     * @return frame timing of the running animation, or of the last one if none is running
+     */
+    public AnimationFrameStats getAnimationFrameStats() {
+        return styler.getAnimationFrameStats();
+    }
+
+    public boolean isUsingSharedAnimationDriver() {
+        return styler.isUsingSharedAnimationDriver();
+    }
+
+    /**
+     * When turned on, this view's animations are driven by one frame callback shared with other views using it.
+     * See Styler.setUseSharedAnimationDriver(boolean)
+     * @param useSharedAnimationDriver
+     * @return
+     */
+    public StyleImageView setUseSharedAnimationDriver(boolean useSharedAnimationDriver) {
+        styler.setUseSharedAnimationDriver(useSharedAnimationDriver);
+        return this;
+    }
+
+    /**
+     * Sets a cache getBitmap() looks up and stores its results in, see Styler.setBitmapCache(StyledBitmapCache)
+     * @param bitmapCache the cache to use, or null to turn caching off
+     * @return
+     */
+    public StyleImageView setBitmapCache(StyledBitmapCache bitmapCache) {
+        styler.setBitmapCache(bitmapCache);
+        return this;
+    }
+
+    public StyledBitmapCache getBitmapCache() {
+        return styler.getBitmapCache();
+    }
+
+    /**
+     * Sets the executor background renderings like getBitmapAsync run on, see Styler.setExecutor(Executor)
+     * @param executor
+     * @return
+     */
+    public StyleImageView setExecutor(Executor executor) {
+        styler.setExecutor(executor);
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return styler.getExecutor();
+    }
+
     public int getBrightness() {
         return styler.getBrightness();
     }
@@ -159,17 +257,32 @@ public class StyleImageView extends ImageView {
      * Note if mode is not Styler.Mode.SATURATION, and saturation is set before, saturation will be reset to 1(default value)
      * If mode is Styler.Mode.SATURATION, you must call setSaturation and specify a saturation value.
      * Because by default saturation is 1 and doesn't cause any changes of UI.
+     * mode can also be the id of a preset registered with StylePresets.register(String name, float[] matrix)
      * @param mode
      * @return Styler object
      */
     public StyleImageView setMode(int mode) {
         if (!Styler.Mode.hasMode(mode)) {
-            throw new IllegalArgumentException("Mode " + mode + " not supported! Check Styler.Mode class for supported modes");
+            throw new IllegalArgumentException("Mode " + mode + " not supported! Check Styler.Mode class for supported modes, or register it in StylePresets");
         }
         styler.setMode(mode);
         return this;
     }
 
+    public StyleChain getStyleChain() {
+        return styler.getStyleChain();
+    }
+
+    /**
+     * Sets a chain of effects applied on top of mode, brightness and contrast, all rendered in a single pass.
+     * @param styleChain the chain to apply, or null to remove it
+     * @return
+     */
+    public StyleImageView setStyleChain(StyleChain styleChain) {
+        styler.setStyleChain(styleChain);
+        return this;
+    }
+
     public Styler.AnimationListener getAnimationListener() {
         return styler.getAnimationListener();
     }
@@ -200,4 +313,43 @@ public class StyleImageView extends ImageView {
     public Bitmap getBitmap(int width, int height) {
         return styler.getBitmap(width, height);
     }
+
+    /**
+     * Renders a downscaled preview right away and the full size bitmap in the background,
+     * see Styler.getBitmapProgressive(int previewSampleSize, Styler.ProgressiveCallback callback)
+     */
+    public StyleTask getBitmapProgressive(int previewSampleSize, Styler.ProgressiveCallback callback) {
+        return styler.getBitmapProgressive(previewSampleSize, callback);
+    }
+
+    public StyleTask getBitmapProgressive(int width, int height, int previewSampleSize, Styler.ProgressiveCallback callback) {
+        return styler.getBitmapProgressive(width, height, previewSampleSize, callback);
+    }
+
+    /**
+     * Renders a downscaled styled snapshot, see Styler.getSnapshot(int sampleSize, Bitmap.Config config)
+     */
+    public Bitmap getSnapshot(int sampleSize, Bitmap.Config config) {
+        return styler.getSnapshot(sampleSize, config);
+    }
+
+    /**
+     * Renders the styled image into a reusable bitmap, see Styler.getSnapshot(Bitmap target)
+     */
+    public Bitmap getSnapshot(Bitmap target) {
+        return styler.getSnapshot(target);
+    }
+
+    /**
+     * Renders the styled bitmap in the background, see Styler.getBitmapAsync(Styler.BitmapCallback)
+     * @param callback receives the bitmap with style added on the main thread
+     * @return task which can be used to cancel the request
+     */
+    public StyleTask getBitmapAsync(Styler.BitmapCallback callback) {
+        return styler.getBitmapAsync(callback);
+    }
+
+    public StyleTask getBitmapAsync(int width, int height, Styler.BitmapCallback callback) {
+        return styler.getBitmapAsync(width, height, callback);
+    }
 }
@@ -0,0 +1,44 @@
+package it.chengdazhi.styleimageview;
+
+/**
+ * Cache of final style matrices keyed by (mode, brightness, contrast, saturation).
+ *
+ * Contrast and saturation are quantized to steps of 1/1024 in the key only, which is far below a visible difference.
+ * A miss computes the matrix from the exact values, so a hit may return the matrix of values within the same step.
+ * The cache is a fixed size table indexed by the key's hash, a lookup allocates nothing.
+ */
+final class StyleMatrixCache {
+    private static final int SIZE = 256;
+    private static final float QUANTUM = 1024;
+    /**
+     * Quantized contrast and saturation above this don't fit the key and bypass the cache
+     */
+    private static final int MAX_QUANTIZED = (1 << 19) - 1;
+
+    private final long[] keys = new long[SIZE];
+    private final boolean[] used = new boolean[SIZE];
+    private final float[][] matrices = new float[SIZE][StyleMatrixEngine.MATRIX_SIZE];
+
+    /**
+     * Copies the final matrix of the given style into out
+     * @return out
+     */
+    synchronized float[] get(int mode, int brightness, float contrast, float saturation, float[] out) {
+        int quantizedContrast = Math.round(contrast * QUANTUM);
+        int quantizedSaturation = Math.round(saturation * QUANTUM);
+        if (quantizedContrast < 0 || quantizedContrast > MAX_QUANTIZED || quantizedSaturation < 0 || quantizedSaturation > MAX_QUANTIZED
+                || brightness < -255 || brightness > 255 || mode < -1 || mode >= 0xFFFF) {
+            return StyleMatrixEngine.calculate(mode, brightness, contrast, saturation, out);
+        }
+        long key = ((long) (mode + 1) << 48) | ((long) (brightness + 255) << 38)
+                | ((long) quantizedContrast << 19) | quantizedSaturation;
+        int index = (int) ((key ^ (key >>> 29) ^ (key >>> 47)) * 0x9E3779B9L >>> 24) & (SIZE - 1);
+        float[] matrix = matrices[index];
+        if (!used[index] || keys[index] != key) {
+            StyleMatrixEngine.calculate(mode, brightness, contrast, saturation, matrix);
+            keys[index] = key;
+            used[index] = true;
+        }
+        return StyleMatrixEngine.copy(matrix, out);
+    }
+}
@@ -0,0 +1,203 @@
+package it.chengdazhi.styleimageview;
+
+/**
+ * Color matrix math used by Styler, free of any android dependency so it can run on a plain JVM.
+ *
+ * Matrices are 4x5 row-major float arrays in the same layout as android.graphics.ColorMatrix:
+ * R' = m[0] * R + m[1] * G + m[2] * B + m[3] * A + m[4], and so on for G', B' and A'.
+ * Every method writes into a caller supplied array and returns it, nothing is allocated.
+ */
+public final class StyleMatrixEngine {
+    public static final int MATRIX_SIZE = 20;
+
+    private static final float LUM_R = 0.3086F;
+    private static final float LUM_G = 0.6094F;
+    private static final float LUM_B = 0.0820F;
+
+    private StyleMatrixEngine() {
+    }
+
+    /**
+     * Resets out to the identity matrix
+     * @param out array of 20 elements
+     * @return out
+     */
+    public static float[] identity(float[] out) {
+        checkMatrix(out);
+        for (int i = 0; i < MATRIX_SIZE; i++) {
+            out[i] = 0;
+        }
+        out[0] = out[6] = out[12] = out[18] = 1;
+        return out;
+    }
+
+    public static float[] copy(float[] matrix, float[] out) {
+        checkMatrix(matrix);
+        checkMatrix(out);
+        System.arraycopy(matrix, 0, out, 0, MATRIX_SIZE);
+        return out;
+    }
+
+    /**
+     * Concatenates two matrices like ColorMatrix.setConcat(a, b) does: the result applies b first, then a.
+     * out may be the same array as a, but not the same array as b.
+     * @return out
+     */
+    public static float[] concat(float[] a, float[] b, float[] out) {
+        checkMatrix(a);
+        checkMatrix(b);
+        checkMatrix(out);
+        if (out == b) {
+            throw new IllegalArgumentException("out can't be the same array as b");
+        }
+        for (int row = 0; row < 20; row += 5) {
+            float a0 = a[row], a1 = a[row + 1], a2 = a[row + 2], a3 = a[row + 3], a4 = a[row + 4];
+            for (int col = 0; col < 5; col++) {
+                out[row + col] = a0 * b[col] + a1 * b[5 + col] + a2 * b[10 + col] + a3 * b[15 + col];
+            }
+            out[row + 4] += a4;
+        }
+        return out;
+    }
+
+    /**
+     * Linear interpolation between start and end, out may be start or end.
+     * @param progress 0 gives start and 1 gives end
+     * @return out
+     */
+    public static float[] lerp(float[] start, float[] end, float progress, float[] out) {
+        checkMatrix(start);
+        checkMatrix(end);
+        checkMatrix(out);
+        float remaining = 1 - progress;
+        for (int i = 0; i < MATRIX_SIZE; i++) {
+            out[i] = (start[i] * remaining) + (end[i] * progress);
+        }
+        return out;
+    }
+
+    /**
+     * Folds brightness and contrast into matrix in place.
+     * @param brightness range [-255, 255], 0 means no change
+     * @param contrast 1 means no change
+     * @return matrix
+     */
+    public static float[] applyBrightnessAndContrast(float[] matrix, int brightness, float contrast) {
+        checkMatrix(matrix);
+        float t = (1.0F - contrast) / 2.0F * 255.0F;
+        for (int i = 0; i < 3; i++) {
+            for (int j = i * 5; j < i * 5 + 3; j++) {
+                matrix[j] *= contrast;
+            }
+            matrix[5 * i + 4] += t + brightness;
+        }
+        return matrix;
+    }
+
+    /**
+     * Writes the saturation matrix into out.
+     * @param saturation 1 means no change, 0 gives grey scale
+     * @return out
+     */
+    public static float[] saturation(float saturation, float[] out) {
+        identity(out);
+        float sr = (1 - saturation) * LUM_R;
+        float sg = (1 - saturation) * LUM_G;
+        float sb = (1 - saturation) * LUM_B;
+        out[0] = sr + saturation;
+        out[1] = sg;
+        out[2] = sb;
+        out[5] = sr;
+        out[6] = saturation + sg;
+        out[7] = sb;
+        out[10] = sr;
+        out[11] = sg;
+        out[12] = saturation + sb;
+        return out;
+    }
+
+    /**
+     * Copies styleMatrix into out and folds brightness and contrast on top of it, out may be styleMatrix.
+     * @return out
+     */
+    public static float[] calculate(float[] styleMatrix, int brightness, float contrast, float[] out) {
+        if (styleMatrix != out) {
+            copy(styleMatrix, out);
+        }
+        return applyBrightnessAndContrast(out, brightness, contrast);
+    }
+
+    /**
+     * Computes the final matrix of a style into out, the same matrix Styler shows for these params.
+     * @param mode id of a preset in StylePresets, e.g. Styler.Mode.SEPIA. StylePresets.SATURATION is computed from
+     *             saturation, any other id without a preset, e.g. Styler.Mode.NONE, only gets brightness and contrast
+     * @param brightness from -255 to 255, 0 means no change
+     * @param contrast 0 or bigger, 1 means no change
+     * @param saturation 0 or bigger, only used by StylePresets.SATURATION, 1 means no change
+     * @return out
+     */
+    public static float[] calculate(int mode, int brightness, float contrast, float saturation, float[] out) {
+        if (mode == StylePresets.SATURATION) {
+            saturation(saturation, out);
+        } else if (StylePresets.contains(mode)) {
+            copy(StylePresets.get(mode), out);
+        } else {
+            identity(out);
+        }
+        return applyBrightnessAndContrast(out, brightness, contrast);
+    }
+
+    /**
+     * Applies matrix to count ARGB pixels of src and writes them into dst, the same way ColorMatrixColorFilter does.
+     * src and dst may be the same array.
+     */
+    public static void apply(float[] matrix, int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+        checkMatrix(matrix);
+        checkRange(src, srcOffset, count);
+        checkRange(dst, dstOffset, count);
+        float m0 = matrix[0], m1 = matrix[1], m2 = matrix[2], m3 = matrix[3], m4 = matrix[4];
+        float m5 = matrix[5], m6 = matrix[6], m7 = matrix[7], m8 = matrix[8], m9 = matrix[9];
+        float m10 = matrix[10], m11 = matrix[11], m12 = matrix[12], m13 = matrix[13], m14 = matrix[14];
+        float m15 = matrix[15], m16 = matrix[16], m17 = matrix[17], m18 = matrix[18], m19 = matrix[19];
+        for (int i = 0; i < count; i++) {
+            int color = src[srcOffset + i];
+            int a = color >>> 24;
+            int r = (color >> 16) & 0xFF;
+            int g = (color >> 8) & 0xFF;
+            int b = color & 0xFF;
+            int newR = clamp(m0 * r + m1 * g + m2 * b + m3 * a + m4);
+            int newG = clamp(m5 * r + m6 * g + m7 * b + m8 * a + m9);
+            int newB = clamp(m10 * r + m11 * g + m12 * b + m13 * a + m14);
+            int newA = clamp(m15 * r + m16 * g + m17 * b + m18 * a + m19);
+            dst[dstOffset + i] = (newA << 24) | (newR << 16) | (newG << 8) | newB;
+        }
+    }
+
+    static int clamp(float value) {
+        if (value <= 0) {
+            return 0;
+        } else if (value >= 255) {
+            return 255;
+        }
+        return (int) (value + 0.5F);
+    }
+
+    static void checkRange(int[] pixels, int offset, int count) {
+        if (pixels == null) {
+            throw new NullPointerException("pixels can not be null");
+        }
+        if (offset < 0 || count < 0 || offset > pixels.length - count) {
+            throw new ArrayIndexOutOfBoundsException("offset " + offset + " and count " + count
+                    + " out of bounds for length " + pixels.length);
+        }
+    }
+
+    static void checkMatrix(float[] matrix) {
+        if (matrix == null) {
+            throw new NullPointerException("matrix can not be null");
+        }
+        if (matrix.length != MATRIX_SIZE) {
+            throw new IllegalArgumentException("matrix must have " + MATRIX_SIZE + " elements, got " + matrix.length);
+        }
+    }
+}
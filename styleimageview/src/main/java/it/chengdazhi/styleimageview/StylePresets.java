@@ -0,0 +1,138 @@
+package it.chengdazhi.styleimageview;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of named style presets, each one a fixed color matrix with an int id usable as a Styler mode.
+ *
+ * The built-in modes are registered with the ids of their Styler.Mode constants, presets registered at runtime
+ * get the following ids. Matrices are copied once on registration and stored in an array indexed by id,
+ * so looking a preset up is a single array access and never allocates, however many presets an app ships.
+ * Presets can't be unregistered or changed, which is what lets Stylers and caches hold on to their ids.
+ */
+public final class StylePresets {
+    /**
+     * Id of the built-in saturation preset, the one preset whose matrix is computed from a value,
+     * see StyleMatrixEngine.calculate(int, int, float, float, float[])
+     */
+    public static final int SATURATION = 0;
+
+    private static final Object LOCK = new Object();
+    private static final Map<String, Integer> IDS = new HashMap<String, Integer>();
+    // replaced as a whole when it grows, count is written last so readers never see an unfilled slot
+    private static volatile float[][] matrices = new float[16][];
+    private static volatile String[] names = new String[16];
+    private static volatile int count;
+
+    static {
+        // order gives every built-in the id of its Styler.Mode constant
+        registerBuiltIn("saturation", StyleMatrixs.COMMON);
+        registerBuiltIn("grey_scale", StyleMatrixs.GREY_SCALE);
+        registerBuiltIn("invert", StyleMatrixs.INVERT);
+        registerBuiltIn("rgb_to_bgr", StyleMatrixs.RGB_TO_BGR);
+        registerBuiltIn("sepia", StyleMatrixs.SEPIA);
+        registerBuiltIn("black_and_white", StyleMatrixs.BLACK_AND_WHITE);
+        registerBuiltIn("bright", StyleMatrixs.BRIGHT);
+        registerBuiltIn("vintage_pinhole", StyleMatrixs.VINTAGE_PINHOLE);
+        registerBuiltIn("kodachrome", StyleMatrixs.KODACHROME);
+        registerBuiltIn("technicolor", StyleMatrixs.TECHNICOLOR);
+    }
+
+    private StylePresets() {
+    }
+
+    /**
+     * Registers a preset, which can then be used like any Styler.Mode, e.g. styler.setMode(id).
+     * @param name unique name of the preset
+     * @param matrix 4x5 color matrix of the preset, it is copied
+     * @return id of the new preset
+     */
+    public static int register(String name, float[] matrix) {
+        if (name == null) {
+            throw new NullPointerException("name can not be null");
+        }
+        StyleMatrixEngine.checkMatrix(matrix);
+        return add(name, matrix.clone());
+    }
+
+    private static void registerBuiltIn(String name, float[] matrix) {
+        // built-in presets share the arrays of StyleMatrixs, which are never modified either
+        add(name, matrix);
+    }
+
+    private static int add(String name, float[] matrix) {
+        synchronized (LOCK) {
+            if (IDS.containsKey(name)) {
+                throw new IllegalArgumentException("a preset named " + name + " is already registered");
+            }
+            int id = count;
+            float[][] newMatrices = matrices;
+            String[] newNames = names;
+            if (id == newMatrices.length) {
+                newMatrices = new float[id * 2][];
+                newNames = new String[id * 2];
+                System.arraycopy(matrices, 0, newMatrices, 0, id);
+                System.arraycopy(names, 0, newNames, 0, id);
+            }
+            newMatrices[id] = matrix;
+            newNames[id] = name;
+            matrices = newMatrices;
+            names = newNames;
+            IDS.put(name, id);
+            count = id + 1;
+            return id;
+        }
+    }
+
+    /**
+     * @return true if id belongs to a registered preset
+     */
+    public static boolean contains(int id) {
+        return id >= 0 && id < count;
+    }
+
+    /**
+     * @return number of registered presets, ids go from 0 to getCount() - 1
+     */
+    public static int getCount() {
+        return count;
+    }
+
+    /**
+     * @return id of the preset with the given name, or -1 if there is none
+     */
+    public static int getId(String name) {
+        synchronized (LOCK) {
+            Integer id = IDS.get(name);
+            return id != null ? id : -1;
+        }
+    }
+
+    public static String getName(int id) {
+        checkId(id);
+        return names[id];
+    }
+
+    /**
+     * Copies the matrix of preset id into out
+     * @return out
+     */
+    public static float[] getMatrix(int id, float[] out) {
+        return StyleMatrixEngine.copy(get(id), out);
+    }
+
+    /**
+     * @return the shared matrix of preset id, which must not be modified
+     */
+    static float[] get(int id) {
+        checkId(id);
+        return matrices[id];
+    }
+
+    private static void checkId(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("no preset with id " + id);
+        }
+    }
+}
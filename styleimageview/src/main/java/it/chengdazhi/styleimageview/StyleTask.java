@@ -0,0 +1,93 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Handle of a bitmap styled in the background.
+ * The result is delivered to the Styler.BitmapCallback on the main thread, unless the task is canceled before.
+ */
+public class StyleTask {
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private final Callable<Bitmap> work;
+    private final Styler.BitmapCallback callback;
+    private volatile boolean canceled;
+    private volatile boolean done;
+
+    StyleTask(Callable<Bitmap> work, Styler.BitmapCallback callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback can not be null");
+        }
+        this.work = work;
+        this.callback = callback;
+    }
+
+    StyleTask submit(Executor executor) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                execute();
+            }
+        });
+        return this;
+    }
+
+    private void execute() {
+        if (canceled) {
+            done = true;
+            return;
+        }
+        Bitmap bitmap = null;
+        Throwable error = null;
+        try {
+            bitmap = work.call();
+        } catch (Exception e) {
+            error = e;
+        } catch (OutOfMemoryError e) {
+            // the likely failure for large bitmaps, the callback has to hear about it instead of the executor's thread
+            error = e;
+        }
+        final Bitmap result = bitmap;
+        final Throwable failure = error;
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                done = true;
+                if (canceled) {
+                    return;
+                }
+                if (failure != null) {
+                    callback.onFailure(failure);
+                } else {
+                    callback.onBitmapReady(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the task. If it has not started yet it won't run at all, otherwise its result is dropped.
+     * When called on the main thread, the callback is guaranteed not to be invoked afterwards.
+     * @return false if the task had already finished
+     */
+    public boolean cancel() {
+        canceled = true;
+        return !done;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * @return true once the task has finished or was skipped because it was canceled
+     */
+    public boolean isDone() {
+        return done;
+    }
+}
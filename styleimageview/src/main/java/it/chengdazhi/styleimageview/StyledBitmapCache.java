@@ -0,0 +1,137 @@
+package it.chengdazhi.styleimageview;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * LRU cache of styled bitmaps, bounded by the total byte size of the cached bitmaps.
+ * Entries are keyed by the source bitmap's generation id, the output size and the final color matrix,
+ * so a source drawn onto after it was styled misses the cache.
+ *
+ * The cache can be registered with Context.registerComponentCallbacks() to trim itself under memory pressure.
+ * Bitmaps returned by the cache are shared, don't modify or recycle them.
+ */
+public class StyledBitmapCache implements ComponentCallbacks2 {
+    private final LruCache<Key, Bitmap> cache;
+
+    /**
+     * @param maxSizeBytes max total byte count of the cached bitmaps
+     */
+    public StyledBitmapCache(int maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException("maxSizeBytes must be bigger than 0");
+        }
+        cache = new LruCache<Key, Bitmap>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * @return the bitmap styled from source with matrix at source's size, or null
+     */
+    public Bitmap get(Bitmap source, float[] matrix) {
+        return get(source, source.getWidth(), source.getHeight(), matrix);
+    }
+
+    /**
+     * @return the bitmap styled from source with matrix at the given size, or null
+     */
+    public Bitmap get(Bitmap source, int width, int height, float[] matrix) {
+        Key key = new Key(source, width, height, matrix);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null && bitmap.isRecycled()) {
+            cache.remove(key);
+            return null;
+        }
+        return bitmap;
+    }
+
+    public void put(Bitmap source, float[] matrix, Bitmap styled) {
+        cache.put(new Key(source, styled.getWidth(), styled.getHeight(), matrix), styled);
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return total byte count of the cached bitmaps
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    public void evictAll() {
+        cache.evictAll();
+    }
+
+    /**
+     * Shrinks the cache according to a ComponentCallbacks2 trim level
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        cache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private static final class Key {
+        private final int generationId;
+        private final int width;
+        private final int height;
+        private final MatrixKey matrix;
+
+        Key(Bitmap source, int width, int height, float[] matrix) {
+            generationId = source.getGenerationId();
+            this.width = width;
+            this.height = height;
+            this.matrix = new MatrixKey(matrix);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return generationId == key.generationId && width == key.width && height == key.height
+                    && matrix.equals(key.matrix);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = generationId;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return 31 * result + matrix.hashCode();
+        }
+    }
+}
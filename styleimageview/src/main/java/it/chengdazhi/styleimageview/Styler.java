@@ -3,18 +3,28 @@ package it.chengdazhi.styleimageview;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.ColorMatrix;
 import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.view.Gravity;
 import android.view.View;
 import android.view.animation.Interpolator;
 import android.view.animation.LinearInterpolator;
 import android.widget.ImageView;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
 /**
  * Created by chengdazhi on 8/10/16.
  *
@@ -22,6 +32,11 @@ import android.widget.ImageView;
  * using ColorMatrixColorFilter.
  */
 public class Styler {
+    private static final int MAX_PIXELS_PER_PASS = 1 << 20;
+    // only updateStyle() goes through it, seek bars call that with many nearly equal values
+    private static final StyleMatrixCache MATRIX_CACHE = new StyleMatrixCache();
+    private static volatile StylerMetrics globalMetrics = StylerMetrics.NONE;
+
     private boolean enableAnimation;
     private Interpolator interpolator;
     private long animationDuration;
@@ -31,8 +46,42 @@ public class Styler {
     private int mode;
     private AnimationListener listener;
     private DrawableHolder drawableHolder;
-    private float[] oldMatrix = StyleMatrixs.common();
+    private final float[] oldMatrix = StyleMatrixs.common();
+    // scratch state reused by every animation frame, so a frame only allocates its filter
+    private final float[] startMatrix = new float[20];
+    private final float[] endMatrix = new float[20];
+    private final ColorMatrix colorMatrix = new ColorMatrix();
+    private final AnimationFrameMatrix frameMatrix = new AnimationFrameMatrix(startMatrix, endMatrix, oldMatrix, colorMatrix.getArray());
+    private final float[] targetMatrix = new float[20];
+    private final float[] chainMatrix = new float[20];
+    private boolean clearStyleOnAnimationEnd;
+    private boolean animationCanceled;
     private ValueAnimator animator;
+    private boolean coalesceUpdates;
+    private boolean useSharedAnimationDriver;
+    private boolean sharedAnimationRunning;
+    private boolean useLayerDuringAnimation;
+    private Paint layerPaint;
+    private boolean layerActive;
+    private int savedLayerType;
+    private final AnimationFrameStats frameStats = new AnimationFrameStats();
+    private boolean frameStatsReported = true;
+    private StylerMetrics metrics;
+    // reused by every snapshot, snapshots are taken on the main thread only
+    private Canvas snapshotCanvas;
+    private Paint snapshotPaint;
+    private final Rect snapshotRect = new Rect();
+    private final FrameScheduler updateScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            applyStyle();
+        }
+    });
+    private Executor executor = AsyncTask.THREAD_POOL_EXECUTOR;
+    private StyleTask pendingTask;
+    private StyleTask refineTask;
+    private StyledBitmapCache bitmapCache;
+    private StyleChain styleChain;
 
     private Styler(Builder builder) {
         enableAnimation = builder.enableAnimation;
@@ -43,6 +92,10 @@ public class Styler {
         mode = builder.mode;
         drawableHolder = builder.drawableHolder;
         interpolator = builder.interpolator;
+        coalesceUpdates = builder.coalesceUpdates;
+        useSharedAnimationDriver = builder.useSharedAnimationDriver;
+        useLayerDuringAnimation = builder.useLayerDuringAnimation;
+        metrics = builder.metrics;
     }
 
     /**
@@ -50,18 +103,27 @@ public class Styler {
      * Simply setting params like mode and brightness won't bringing effect until this method is called.
      */
     public void updateStyle() {
+        if (coalesceUpdates) {
+            updateScheduler.schedule();
+        } else {
+            applyStyle();
+        }
+    }
+
+    private void applyStyle() {
         if (drawableHolder.getDrawable() == null) {
             return;
         }
-        final float[] matrix = calculateMatrix(mode, brightness, contrast, saturation);
+        // a full size rendering still in flight has the previous style
+        cancelRefinement();
+        long start = startTiming(metrics);
+        float[] matrix = MATRIX_CACHE.get(mode, brightness, contrast, saturation, targetMatrix);
+        if (styleChain != null && styleChain.size() > 0) {
+            matrix = StyleMatrixEngine.concat(styleChain.getMatrix(chainMatrix), matrix, chainMatrix);
+        }
+        metrics.onMatrixComputed(elapsedSince(metrics, start));
         if (enableAnimation) {
-            animateMatrix(oldMatrix, matrix, new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    super.onAnimationEnd(animation);
-                    setDrawableStyleByMatrix(matrix);
-                }
-            });
+            animateMatrix(matrix, false);
         } else {
             setDrawableStyleByMatrix(matrix);
         }
@@ -74,149 +136,252 @@ public class Styler {
      * Note if animation is enabled, this method will also have animation effect.
      */
     public void clearStyle() {
+        // a pending coalesced update would overwrite the cleared style
+        updateScheduler.cancel();
+        cancelRefinement();
         if (drawableHolder.getDrawable() == null) {
             return;
         }
         if (enableAnimation) {
-            animateMatrix(oldMatrix, StyleMatrixs.common(), new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    super.onAnimationEnd(animation);
-                    drawableHolder.getDrawable().clearColorFilter();
-                    mode = Mode.NONE;
-                    saturation = 1;
-                }
-            });
+            animateMatrix(StyleMatrixs.COMMON, true);
         } else {
             drawableHolder.getDrawable().clearColorFilter();
+            StyleMatrixEngine.identity(oldMatrix);
             mode = Mode.NONE;
             saturation = 1;
         }
     }
 
-    private void animateMatrix(final float[] startMatrix, final float[] endMatrix, AnimatorListenerAdapter onAnimationEndListener) {
-        if (animator != null) {
+    /**
+     * Animates from the matrix currently shown to targetMatrix.
+     * The animator and its listeners are created once per Styler and reused, a running animation is simply retargeted.
+     */
+    private void animateMatrix(float[] targetMatrix, boolean clearStyleOnEnd) {
+        if (useSharedAnimationDriver) {
+            animateMatrixWithSharedDriver(targetMatrix, clearStyleOnEnd);
+            return;
+        }
+        cancelSharedAnimation();
+        if (animator == null) {
+            animator = createAnimator();
+        } else if (animator.isStarted()) {
             animator.cancel();
         }
-        animator = ValueAnimator.ofFloat(0F, 1F).setDuration(animationDuration);
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+        frameMatrix.start(targetMatrix);
+        clearStyleOnAnimationEnd = clearStyleOnEnd;
+        animator.setDuration(animationDuration);
+        animator.start();
+    }
+
+    private ValueAnimator createAnimator() {
+        ValueAnimator valueAnimator = ValueAnimator.ofFloat(0F, 1F);
+        valueAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                float[] result = new float[20];
                 float fraction = valueAnimator.getAnimatedFraction();
                 float progress = interpolator.getInterpolation(fraction);
-                for (int i = 0; i < 20; i++) {
-                    result[i] = (startMatrix[i] * (1 - progress)) + (endMatrix[i] * progress);
-                }
-                setDrawableStyleByMatrix(result);
-                oldMatrix = result.clone();
+                frameMatrix.interpolate(progress);
+                // the animator doesn't expose its frame time, the clock is only read for metrics
+                setDrawableFrameMatrix(startTiming(metrics));
                 if (listener != null) {
                     listener.onAnimationUpdate(fraction, progress);
                 }
             }
         });
-        animator.addListener(onAnimationEndListener);
-        animator.addListener(new AnimatorListenerAdapter() {
+        valueAnimator.addListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationStart(Animator animation) {
                 super.onAnimationStart(animation);
+                animationCanceled = false;
+                startFrameStats();
                 if (listener != null) {
                     listener.onAnimationStart();
                 }
             }
 
+            @Override
+            public void onAnimationCancel(Animator animation) {
+                super.onAnimationCancel(animation);
+                animationCanceled = true;
+            }
+
             @Override
             public void onAnimationEnd(Animator animation) {
                 super.onAnimationEnd(animation);
+                // a canceled animation is being retargeted, keep the interpolated matrix as the new start point
+                if (!animationCanceled) {
+                    finishAnimation();
+                }
                 if (listener != null) {
                     listener.onAnimationEnd();
                 }
             }
         });
-        animator.start();
+        return valueAnimator;
+    }
+
+    private void animateMatrixWithSharedDriver(float[] targetMatrix, boolean clearStyleOnEnd) {
+        if (animator != null && animator.isStarted()) {
+            animator.cancel();
+        }
+        boolean retarget = sharedAnimationRunning;
+        StyleMatrixEngine.copy(targetMatrix, endMatrix);
+        clearStyleOnAnimationEnd = clearStyleOnEnd;
+        sharedAnimationRunning = true;
+        StyleAnimationDriver.getInstance().start(this, oldMatrix, endMatrix, animationDuration, interpolator);
+        startFrameStats();
+        if (listener != null) {
+            // same callbacks as a canceled and restarted ValueAnimator
+            if (retarget) {
+                listener.onAnimationEnd();
+            }
+            listener.onAnimationStart();
+        }
+    }
+
+    private void cancelSharedAnimation() {
+        if (!sharedAnimationRunning) {
+            return;
+        }
+        sharedAnimationRunning = false;
+        StyleAnimationDriver.getInstance().cancel(this);
+        if (listener != null) {
+            listener.onAnimationEnd();
+        }
+    }
+
+    void onSharedAnimationFrame(float[] matrix, float fraction, float progress, long frameTimeNanos) {
+        frameMatrix.set(matrix);
+        setDrawableFrameMatrix(frameTimeNanos);
+        if (listener != null) {
+            listener.onAnimationUpdate(fraction, progress);
+        }
+    }
+
+    void onSharedAnimationEnd() {
+        sharedAnimationRunning = false;
+        finishAnimation();
+        if (listener != null) {
+            listener.onAnimationEnd();
+        }
+    }
+
+    private void finishAnimation() {
+        if (clearStyleOnAnimationEnd) {
+            if (drawableHolder.getDrawable() != null) {
+                drawableHolder.getDrawable().clearColorFilter();
+            }
+            StyleMatrixEngine.copy(endMatrix, oldMatrix);
+            mode = Mode.NONE;
+            saturation = 1;
+        } else {
+            setDrawableStyleByMatrix(endMatrix);
+        }
+        // the final filter is on the drawable again, so the layer can go in the same frame
+        stopLayer();
+        reportFrameStats();
     }
 
+    private void startFrameStats() {
+        // a retargeted animation never finished, report what it drew before starting over
+        reportFrameStats();
+        frameStats.reset(canUseLayer());
+        frameStatsReported = false;
+    }
+
+    private void reportFrameStats() {
+        if (frameStatsReported) {
+            return;
+        }
+        frameStatsReported = true;
+        metrics.onAnimationFinished(frameStats.getFrameCount(), frameStats.getDroppedFrameCount());
+    }
+
+    /**
+     * Sets a style that stays, its filter is shared with every other drawable using the same matrix.
+     */
     private void setDrawableStyleByMatrix(float[] matrix) {
         if (drawableHolder.getDrawable() == null) {
             return;
         }
-        drawableHolder.getDrawable().setColorFilter(new ColorMatrixColorFilter(new ColorMatrix(matrix)));
-        oldMatrix = matrix.clone();
+        long start = startTiming(metrics);
+        drawableHolder.getDrawable().setColorFilter(ColorFilterCache.get(matrix));
+        StyleMatrixEngine.copy(matrix, oldMatrix);
+        metrics.onFilterApplied(elapsedSince(metrics, start));
     }
 
-    private static float[] calculateMatrix(int mode, int brightness, float contrast, float saturation) {
-        return applyBrightnessAndContrast(getMatrixByMode(mode, saturation), brightness, contrast);
+    /**
+     * Shows the frame computed by frameMatrix, an intermediate matrix which is not worth interning.
+     * ColorMatrixColorFilter has no public way to change its matrix, so every frame gets a new filter.
+     * @param frameTime start of the frame, in the System.nanoTime() time base, 0 if it wasn't read
+     */
+    private void setDrawableFrameMatrix(long frameTime) {
+        Drawable drawable = drawableHolder.getDrawable();
+        if (drawable == null) {
+            return;
+        }
+        long applyStart = startTiming(metrics);
+        ColorMatrixColorFilter filter = new ColorMatrixColorFilter(colorMatrix);
+        if (canUseLayer()) {
+            setLayerFilter(filter);
+        } else {
+            drawable.setColorFilter(filter);
+        }
+        long applyNanos = elapsedSince(metrics, applyStart);
+        frameStats.onFrame(frameTime, applyNanos);
+        metrics.onFilterApplied(applyNanos);
     }
 
-    private static float[] applyBrightnessAndContrast(float[] matrix, int brightness, float contrast) {
-        float t = (1.0F - contrast) / 2.0F * 255.0F;
-        for (int i = 0; i < 3; i++) {
-            for (int j = i * 5; j < i * 5 + 3; j++) {
-                matrix[j] *= contrast;
-            }
-            matrix[5 * i + 4] += t + brightness;
-        }
-        return matrix;
-    }
-
-    private static float[] getMatrixByMode(int mode, float saturation) {
-        float[] targetMatrix = StyleMatrixs.common();
-        switch (mode) {
-            case Mode.NONE:
-                targetMatrix = StyleMatrixs.common();
-                break;
-            case Mode.GREY_SCALE:
-                targetMatrix = StyleMatrixs.greyScale();
-                break;
-            case Mode.INVERT:
-                targetMatrix = StyleMatrixs.invert();
-                break;
-            case Mode.RGB_TO_BGR:
-                targetMatrix = StyleMatrixs.rgbToBgr();
-                break;
-            case Mode.SEPIA:
-                targetMatrix = StyleMatrixs.sepia();
-                break;
-            case Mode.BRIGHT:
-                targetMatrix = StyleMatrixs.bright();
-                break;
-            case Mode.BLACK_AND_WHITE:
-                targetMatrix = StyleMatrixs.blackAndWhite();
-                break;
-            case Mode.VINTAGE_PINHOLE:
-                targetMatrix = StyleMatrixs.vintagePinhole();
-                break;
-            case Mode.KODACHROME:
-                targetMatrix = StyleMatrixs.kodachrome();
-                break;
-            case Mode.TECHNICOLOR:
-                targetMatrix = StyleMatrixs.technicolor();
-                break;
-            case Mode.SATURATION:
-                targetMatrix = getSaturationMatrix(saturation);
-                break;
-        }
-        return targetMatrix;
-    }
-
-    private static float[] getSaturationMatrix(float saturation) {
-        final float lumR = 0.3086F;
-        final float lumG = 0.6094F;
-        final float lumB = 0.0820F;
-        float sr = (1 - saturation) * lumR;
-        float sg = (1 - saturation) * lumG;
-        float sb = (1 - saturation) * lumB;
-        float[] result = StyleMatrixs.common();
-        result[0] = sr + saturation;
-        result[1] = sg;
-        result[2] = sb;
-        result[5] = sr;
-        result[6] = saturation + sg;
-        result[7] = sb;
-        result[10] = sr;
-        result[11] = sg;
-        result[12] = saturation + sb;
-        return result;
+    private boolean canUseLayer() {
+        // View.setLayerPaint() is what lets a frame update the layer without redrawing the view
+        return useLayerDuringAnimation && drawableHolder.isView
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1;
+    }
+
+    /**
+     * Filters the view through its layer paint, so a frame only composites the layer again
+     * instead of drawing the drawable with a new filter.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private void setLayerFilter(ColorMatrixColorFilter filter) {
+        View view = drawableHolder.view;
+        if (layerPaint == null) {
+            layerPaint = new Paint();
+        }
+        layerPaint.setColorFilter(filter);
+        if (!layerActive) {
+            layerActive = true;
+            savedLayerType = view.getLayerType();
+            // the layer holds the unfiltered drawable, the frame's filter is applied when compositing it
+            drawableHolder.getDrawable().clearColorFilter();
+            view.setLayerType(View.LAYER_TYPE_HARDWARE, layerPaint);
+        } else {
+            view.setLayerPaint(layerPaint);
+        }
+    }
+
+    private void stopLayer() {
+        if (!layerActive) {
+            return;
+        }
+        layerActive = false;
+        layerPaint.setColorFilter(null);
+        drawableHolder.view.setLayerType(savedLayerType, null);
+    }
+
+    /**
+     * Validates the style params and returns the final matrix they make
+     */
+    static float[] calculateStyleMatrix(int mode, int brightness, float contrast, float saturation) {
+        checkStyleParams(mode, brightness, contrast, saturation);
+        return calculateMatrix(mode, brightness, contrast, saturation);
+    }
+
+    /**
+     * Computes the exact matrix of the given params, static methods don't go through the quantized cache
+     */
+    private static float[] calculateMatrix(int mode, int brightness, float contrast, float saturation) {
+        return StyleMatrixEngine.calculate(mode, brightness, contrast, saturation, new float[StyleMatrixEngine.MATRIX_SIZE]);
     }
 
     public boolean isAnimationEnabled() {
@@ -257,6 +422,102 @@ public class Styler {
         return this;
     }
 
+    public boolean isCoalescingUpdates() {
+        return coalesceUpdates;
+    }
+
+    /**
+     * When turned on, updateStyle() only marks the style as changed and the style is applied once on the next frame,
+     * no matter how many times updateStyle() was called before it. This suits high frequency callers like SeekBars.
+     * Before API 16 there is no frame callback, so updates are applied at most once per 16 ms instead of once per vsync.
+     * A running animation is retargeted from its current matrix instead of being restarted.
+     * This has to be used on the main thread.
+     * @param coalesceUpdates
+     * @return
+     */
+    public Styler setCoalesceUpdates(boolean coalesceUpdates) {
+        this.coalesceUpdates = coalesceUpdates;
+        if (!coalesceUpdates && updateScheduler.isScheduled()) {
+            updateScheduler.cancel();
+            applyStyle();
+        }
+        return this;
+    }
+
+    /**
+     * Sets where this Styler reports how long computing matrices, applying filters and rendering bitmaps take,
+     * as well as frame counts of its animations.
+     * @param metrics the metrics to report to, e.g. a StylerMetricsRecorder, or null to stop reporting
+     * @return
+     */
+    public Styler setMetrics(StylerMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StylerMetrics.NONE;
+        return this;
+    }
+
+    public StylerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets where the static addStyleToBitmap methods report their rendering time and allocations.
+     * @param metrics the metrics to report to, or null to stop reporting
+     */
+    public static void setGlobalMetrics(StylerMetrics metrics) {
+        globalMetrics = metrics != null ? metrics : StylerMetrics.NONE;
+    }
+
+    public static StylerMetrics getGlobalMetrics() {
+        return globalMetrics;
+    }
+
+    public boolean isUsingLayerDuringAnimation() {
+        return useLayerDuringAnimation;
+    }
+
+    /**
+     * When turned on, a View's animation frames are applied through a hardware layer's Paint instead of the drawable,
+     * so a frame only composites the layer again instead of redrawing the drawable.
+     * The view's layer type is restored when the animation ends. The whole view is filtered while animating,
+     * including its background, so this fits views whose content is the styled drawable.
+     * Only works on API 17 and above and for Stylers built with a View, otherwise it has no effect.
+     * @param useLayerDuringAnimation
+     * @return
+     */
+    public Styler setUseLayerDuringAnimation(boolean useLayerDuringAnimation) {
+        this.useLayerDuringAnimation = useLayerDuringAnimation;
+        if (!useLayerDuringAnimation && layerActive) {
+            // move the current frame back to the drawable
+            setDrawableStyleByMatrix(oldMatrix);
+            stopLayer();
+        }
+        return this;
+    }
+
+    /**
+     * @return frame timing of the running animation, or of the last one if none is running
+     */
+    public AnimationFrameStats getAnimationFrameStats() {
+        return frameStats;
+    }
+
+    public boolean isUsingSharedAnimationDriver() {
+        return useSharedAnimationDriver;
+    }
+
+    /**
+     * When turned on, animations of this Styler are driven by one frame callback shared by all Stylers using it,
+     * instead of a ValueAnimator of its own. This saves per-animator work on screens animating many views at once.
+     * All its animations are timed by the same vsync frame time, before API 16 they run on a 16 ms timer instead.
+     * Interpolators and AnimationListeners work the same way. This has to be used on the main thread.
+     * @param useSharedAnimationDriver
+     * @return
+     */
+    public Styler setUseSharedAnimationDriver(boolean useSharedAnimationDriver) {
+        this.useSharedAnimationDriver = useSharedAnimationDriver;
+        return this;
+    }
+
     public int getBrightness() {
         return brightness;
     }
@@ -308,12 +569,13 @@ public class Styler {
      * Note if mode is not Styler.Mode.SATURATION, and saturation is set before, saturation will be reset to 1(default value)
      * If mode is Styler.Mode.SATURATION, you must call setSaturation and specify a saturation value.
      * Because by default saturation is 1 and doesn't cause any changes of UI.
+     * mode can also be the id of a preset registered with StylePresets.register(String name, float[] matrix)
      * @param mode
      * @return Styler object
      */
     public Styler setMode(int mode) {
         if (!Mode.hasMode(mode)) {
-            throw new IllegalArgumentException("Mode " + mode + " not supported! Check Styler.Mode class for supported modes");
+            throw new IllegalArgumentException("Mode " + mode + " not supported! Check Styler.Mode class for supported modes, or register it in StylePresets");
         }
         this.mode = mode;
         if (mode != Mode.SATURATION) {
@@ -322,6 +584,21 @@ public class Styler {
         return this;
     }
 
+    public StyleChain getStyleChain() {
+        return styleChain;
+    }
+
+    /**
+     * Sets a chain of effects applied on top of mode, brightness and contrast, all rendered in a single pass.
+     * Changes made to the chain afterwards take effect on the next updateStyle().
+     * @param styleChain the chain to apply, or null to remove it
+     * @return
+     */
+    public Styler setStyleChain(StyleChain styleChain) {
+        this.styleChain = styleChain;
+        return this;
+    }
+
     public Drawable getDrawable() {
         return drawableHolder.getDrawable();
     }
@@ -355,25 +632,299 @@ public class Styler {
      * @return the bitmap with style added
      */
     public Bitmap getBitmap() {
+        return getBitmap(getBitmapWidth(), getBitmapHeight());
+    }
+
+    /**
+     * The returned bitmap belongs to the caller, who may modify or recycle it.
+     * If a StyledBitmapCache is set and the drawable is a BitmapDrawable, a cached result is copied
+     * instead of drawing the drawable through its filter again. Bitmaps of an animation's intermediate frames are not cached.
+     */
+    public Bitmap getBitmap(int width, int height) {
+        Drawable currentDrawable = drawableHolder.getDrawable();
+        Bitmap source = null;
+        // a frame's matrix is never requested again, caching it would only evict entries that are
+        if (bitmapCache != null && currentDrawable instanceof BitmapDrawable && !isAnimating()) {
+            source = ((BitmapDrawable) currentDrawable).getBitmap();
+            Bitmap cached = bitmapCache.get(source, width, height, oldMatrix);
+            if (cached != null) {
+                // the cached bitmap itself is never handed out, a caller recycling it would poison the cache
+                Bitmap copy = cached.copy(cached.getConfig(), true);
+                if (copy != null) {
+                    return copy;
+                }
+            }
+        }
+        // the drawable's own filter is cleared while a layer animation runs, so the copy gets the shown matrix itself
+        Drawable drawable = copyDrawable(oldMatrix);
+        Bitmap bitmap = drawToBitmap(drawable, width, height, metrics);
+        if (source != null) {
+            Bitmap cached = bitmap.copy(bitmap.getConfig(), false);
+            if (cached != null) {
+                bitmapCache.put(source, oldMatrix, cached);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Renders the styled drawable scaled down by sampleSize, into a new bitmap of the given config.
+     * For example getSnapshot(4, Bitmap.Config.RGB_565) makes an opaque preview using 1/32 of the memory of getBitmap().
+     * @param sampleSize width and height are divided by it, like BitmapFactory.Options.inSampleSize
+     * @param config config of the snapshot, RGB_565 fits opaque images
+     * @return the snapshot with style added
+     */
+    public Bitmap getSnapshot(int sampleSize, Bitmap.Config config) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sampleSize can't be smaller than 1");
+        }
+        int width = Math.max(1, getBitmapWidth() / sampleSize);
+        int height = Math.max(1, getBitmapHeight() / sampleSize);
+        long start = startTiming(metrics);
+        Bitmap target = Bitmap.createBitmap(width, height, config);
+        renderSnapshot(target, oldMatrix);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), target.getByteCount());
+        return target;
+    }
+
+    /**
+     * Renders the styled drawable scaled to the size of target, replacing its content.
+     * Nothing is allocated besides what the platform needs to draw, so one target can be reused for every snapshot,
+     * e.g. for thumbnails refreshed while the style changes.
+     * For a BitmapDrawable filling its bounds, its bitmap is drawn directly instead of copying the drawable.
+     * This method must be called on the main thread.
+     * @param target mutable bitmap to render into, of any size and config
+     * @return target
+     */
+    public Bitmap getSnapshot(Bitmap target) {
+        if (!target.isMutable()) {
+            throw new IllegalArgumentException("target must be mutable");
+        }
+        long start = startTiming(metrics);
+        renderSnapshot(target, oldMatrix);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), 0);
+        return target;
+    }
+
+    private void renderSnapshot(Bitmap target, float[] matrix) {
         Drawable drawable = drawableHolder.getDrawable();
-        int width = drawable.getIntrinsicWidth();
-        int height = drawable.getIntrinsicHeight();
-        if ((width == 0 || height == 0) && drawableHolder.isView && drawableHolder.view != null) {
-            width = drawableHolder.view.getMeasuredWidth();
-            height = drawableHolder.view.getMeasuredHeight();
+        if (snapshotCanvas == null) {
+            snapshotCanvas = new Canvas();
+            snapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        }
+        target.eraseColor(Color.TRANSPARENT);
+        snapshotCanvas.setBitmap(target);
+        snapshotRect.set(0, 0, target.getWidth(), target.getHeight());
+        if (canDrawBitmapDirectly(drawable)) {
+            // the bitmap drawn with the matrix looks exactly like the drawable, without copying its state
+            snapshotPaint.setColorFilter(ColorFilterCache.get(matrix));
+            snapshotCanvas.drawBitmap(((BitmapDrawable) drawable).getBitmap(), null, snapshotRect, snapshotPaint);
+        } else {
+            // other drawables have to be drawn, and their bounds can't be changed while the view shows them
+            Drawable copy = copyDrawable(matrix);
+            copy.setBounds(snapshotRect);
+            copy.draw(snapshotCanvas);
         }
-        return getBitmap(width, height);
+        snapshotCanvas.setBitmap(null);
     }
 
-    public Bitmap getBitmap(int width, int height) {
-        Drawable drawable = drawableHolder.getDrawable().mutate().getConstantState().newDrawable();
+    /**
+     * @return a copy of the drawable with its own state, filtered by matrix
+     */
+    private Drawable copyDrawable(float[] matrix) {
+        // the copy shares the original's state until it is mutated itself
+        Drawable copy = drawableHolder.getDrawable().mutate().getConstantState().newDrawable().mutate();
+        copy.setColorFilter(ColorFilterCache.get(matrix));
+        return copy;
+    }
+
+    /**
+     * Renders the styled bitmap progressively: a copy downscaled by previewSampleSize is rendered right away
+     * and handed to callback.onPreviewReady() before this method returns, then the full size bitmap is rendered
+     * on the executor set by setExecutor(Executor) and delivered to callback.onBitmapReady().
+     * Both have the style this Styler is set to, even while an animation towards it is running.
+     * The full size rendering is canceled when the style is updated or another rendering is requested before it is done,
+     * so a stale bitmap never replaces the preview of a newer style.
+     * The bitmap's size is based on the view or drawable you passed in.
+     * This method must be called on the main thread.
+     * @param previewSampleSize the preview's width and height are divided by it, e.g. 8
+     * @param callback receives the preview and then the full size bitmap
+     * @return task which can be used to cancel the full size rendering
+     */
+    public StyleTask getBitmapProgressive(int previewSampleSize, ProgressiveCallback callback) {
+        return getBitmapProgressive(getBitmapWidth(), getBitmapHeight(), previewSampleSize, callback);
+    }
+
+    public StyleTask getBitmapProgressive(final int width, final int height, int previewSampleSize, ProgressiveCallback callback) {
+        if (previewSampleSize < 1) {
+            throw new IllegalArgumentException("previewSampleSize can't be smaller than 1");
+        }
+        if (callback == null) {
+            throw new NullPointerException("callback can not be null");
+        }
+        flushPendingUpdate();
+        float[] matrix = isAnimating() ? endMatrix : oldMatrix;
+        final Drawable drawable = copyDrawable(matrix);
+        if (pendingTask != null) {
+            pendingTask.cancel();
+        }
+        long start = startTiming(metrics);
+        Bitmap preview = Bitmap.createBitmap(Math.max(1, width / previewSampleSize), Math.max(1, height / previewSampleSize),
+                Bitmap.Config.ARGB_8888);
+        renderSnapshot(preview, matrix);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), preview.getByteCount());
+        callback.onPreviewReady(preview);
+        pendingTask = new StyleTask(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return drawToBitmap(drawable, width, height, metrics);
+            }
+        }, callback).submit(executor);
+        refineTask = pendingTask;
+        return pendingTask;
+    }
+
+    /**
+     * Applies a coalesced update now, so a rendering requested right after updateStyle() has the new style
+     */
+    private void flushPendingUpdate() {
+        if (updateScheduler.isScheduled()) {
+            updateScheduler.cancel();
+            applyStyle();
+        }
+    }
+
+    private boolean isAnimating() {
+        return sharedAnimationRunning || (animator != null && animator.isRunning());
+    }
+
+    private void cancelRefinement() {
+        if (refineTask != null) {
+            refineTask.cancel();
+            refineTask = null;
+        }
+    }
+
+    private static boolean canDrawBitmapDirectly(Drawable drawable) {
+        if (!(drawable instanceof BitmapDrawable)) {
+            return false;
+        }
+        BitmapDrawable bitmapDrawable = (BitmapDrawable) drawable;
+        return bitmapDrawable.getBitmap() != null
+                && bitmapDrawable.getGravity() == Gravity.FILL
+                && bitmapDrawable.getTileModeX() == null && bitmapDrawable.getTileModeY() == null
+                && bitmapDrawable.getPaint().getAlpha() == 255;
+    }
+
+    /**
+     * Sets a cache getBitmap(int width, int height) looks up and stores its results in.
+     * The cache keeps its own copies, getBitmap still returns a bitmap the caller owns.
+     * The cache can be shared by many Stylers.
+     * @param bitmapCache the cache to use, or null to turn caching off
+     * @return
+     */
+    public Styler setBitmapCache(StyledBitmapCache bitmapCache) {
+        this.bitmapCache = bitmapCache;
+        return this;
+    }
+
+    public StyledBitmapCache getBitmapCache() {
+        return bitmapCache;
+    }
+
+    /**
+     * Renders the styled bitmap on the executor set by setExecutor(Executor), the result is delivered on the main thread.
+     * The bitmap's size is based on the view or drawable you passed in.
+     * Requests supersede each other: a pending request of this Styler is canceled when a new one is made,
+     * so only the latest one is rendered when they come in faster than they can be rendered.
+     * While an animation is running, the bitmap has the style the animation ends at.
+     * This method must be called on the main thread.
+     * @param callback receives the bitmap with style added
+     * @return task which can be used to cancel the request
+     */
+    public StyleTask getBitmapAsync(BitmapCallback callback) {
+        return getBitmapAsync(getBitmapWidth(), getBitmapHeight(), callback);
+    }
+
+    public StyleTask getBitmapAsync(final int width, final int height, BitmapCallback callback) {
+        flushPendingUpdate();
+        // copy the drawable now with its own filter, so the bitmap has the style of the time of the request
+        // and the main thread can keep changing the drawable's filter while the copy is drawn
+        final Drawable drawable = copyDrawable(isAnimating() ? endMatrix : oldMatrix);
+        if (pendingTask != null) {
+            pendingTask.cancel();
+        }
+        pendingTask = new StyleTask(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return drawToBitmap(drawable, width, height, metrics);
+            }
+        }, callback).submit(executor);
+        return pendingTask;
+    }
+
+    /**
+     * Sets the executor background renderings like getBitmapAsync run on.
+     * By default AsyncTask.THREAD_POOL_EXECUTOR is used.
+     * @param executor
+     * @return
+     */
+    public Styler setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor can not be null");
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    private int getBitmapWidth() {
+        if (useMeasuredSize()) {
+            return drawableHolder.view.getMeasuredWidth();
+        }
+        return drawableHolder.getDrawable().getIntrinsicWidth();
+    }
+
+    private int getBitmapHeight() {
+        if (useMeasuredSize()) {
+            return drawableHolder.view.getMeasuredHeight();
+        }
+        return drawableHolder.getDrawable().getIntrinsicHeight();
+    }
+
+    private boolean useMeasuredSize() {
+        Drawable drawable = drawableHolder.getDrawable();
+        return (drawable.getIntrinsicWidth() == 0 || drawable.getIntrinsicHeight() == 0)
+                && drawableHolder.isView && drawableHolder.view != null;
+    }
+
+    private static Bitmap drawToBitmap(Drawable drawable, int width, int height, StylerMetrics metrics) {
+        long start = startTiming(metrics);
         Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(bitmap);
         drawable.setBounds(0, 0, width, height);
         drawable.draw(canvas);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), bitmap.getByteCount());
         return bitmap;
     }
 
+    /**
+     * @return start of a measurement for metrics, the clock is only read when metrics are set
+     */
+    private static long startTiming(StylerMetrics metrics) {
+        return metrics != StylerMetrics.NONE ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return nanos since start, or 0 without reading the clock when metrics are not set
+     */
+    private static long elapsedSince(StylerMetrics metrics, long start) {
+        return metrics != StylerMetrics.NONE ? System.nanoTime() - start : 0;
+    }
+
     /**
      * Method to add style to bitmap
      * This method can only specify the mode, but not saturation
@@ -400,6 +951,245 @@ public class Styler {
      * @return
      */
     public static Bitmap addStyleToBitmap(Context context, Bitmap bitmap, int mode, int brightness, float contrast, float saturation) {
+        checkStyleParams(mode, brightness, contrast, saturation);
+        return drawStyledBitmap(context, bitmap, calculateMatrix(mode, brightness, contrast, saturation));
+    }
+
+    private static Bitmap drawStyledBitmap(Context context, Bitmap bitmap, float[] matrix) {
+        StylerMetrics metrics = globalMetrics;
+        long start = startTiming(metrics);
+        Bitmap newBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(newBitmap);
+        context = context.getApplicationContext();
+        BitmapDrawable drawable = new BitmapDrawable(context.getResources(), bitmap);
+        drawable.setColorFilter(ColorFilterCache.get(matrix));
+        drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        drawable.draw(canvas);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), newBitmap.getByteCount());
+        return newBitmap;
+    }
+
+    /**
+     * Method to add every effect of a StyleChain to bitmap in a single pass
+     *
+     * @param context
+     * @param bitmap Bitmap object to style, it is not changed, you should use the returned bitmap object
+     * @param styleChain effects to apply, in order
+     * @return
+     */
+    public static Bitmap addStyleToBitmap(Context context, Bitmap bitmap, StyleChain styleChain) {
+        return drawStyledBitmap(context, bitmap, styleChain.getMatrix());
+    }
+
+    /**
+     * Same as addStyleToBitmap(Context context, Bitmap bitmap, int mode, int brightness, float contrast, float saturation),
+     * but a bitmap styled the same way before is returned from cache instead of being rendered again.
+     * The returned bitmap is shared by the cache, don't modify or recycle it.
+     */
+    public static Bitmap addStyleToBitmap(Context context, Bitmap bitmap, int mode, int brightness, float contrast, float saturation,
+                                          StyledBitmapCache cache) {
+        checkStyleParams(mode, brightness, contrast, saturation);
+        float[] matrix = calculateMatrix(mode, brightness, contrast, saturation);
+        Bitmap styled = cache.get(bitmap, matrix);
+        if (styled == null) {
+            styled = drawStyledBitmap(context, bitmap, matrix);
+            cache.put(bitmap, matrix, styled);
+        }
+        return styled;
+    }
+
+    /**
+     * Method to add style to bitmap on the CPU, using all threads of the given PixelStyler.
+     * This is meant for large bitmaps, where a single draw would keep one core busy while the others stay idle.
+     *
+     * @param bitmap Bitmap object to style, it is not changed, you should use the returned bitmap object
+     * @param mode
+     * @param brightness if you don't want to change brightness, pass 0
+     * @param contrast if you don't want to change contrast, pass 1
+     * @param saturation if you don't want to change saturation, pass 1. If saturation is set, then the mode must be Styler.Mode.SATURATION
+     * @param pixelStyler PixelStyler to run on, it can be shared by many calls
+     * @return a new ARGB_8888 bitmap with style added
+     */
+    public static Bitmap addStyleToBitmap(Bitmap bitmap, int mode, int brightness, float contrast, float saturation, PixelStyler pixelStyler) {
+        checkStyleParams(mode, brightness, contrast, saturation);
+        if (pixelStyler == null) {
+            throw new NullPointerException("pixelStyler can not be null");
+        }
+        StylerMetrics metrics = globalMetrics;
+        long start = startTiming(metrics);
+        Bitmap newBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+        styleByRows(calculateMatrix(mode, brightness, contrast, saturation), bitmap, newBitmap, pixelStyler);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), newBitmap.getByteCount());
+        return newBitmap;
+    }
+
+    /**
+     * Method to add style to bitmap without allocating a new bitmap.
+     * The styled pixels are written into outBitmap, which may be bitmap itself to style it in place.
+     *
+     * @param bitmap Bitmap object to style
+     * @param outBitmap mutable ARGB_8888 bitmap of the same size as bitmap, its content is replaced
+     * @param mode
+     * @param brightness if you don't want to change brightness, pass 0
+     * @param contrast if you don't want to change contrast, pass 1
+     * @param saturation if you don't want to change saturation, pass 1. If saturation is set, then the mode must be Styler.Mode.SATURATION
+     * @return outBitmap
+     */
+    public static Bitmap addStyleToBitmap(Bitmap bitmap, Bitmap outBitmap, int mode, int brightness, float contrast, float saturation) {
+        checkStyleParams(mode, brightness, contrast, saturation);
+        checkOutBitmap(bitmap, outBitmap);
+        StylerMetrics metrics = globalMetrics;
+        long start = startTiming(metrics);
+        float[] matrix = calculateMatrix(mode, brightness, contrast, saturation);
+        if (bitmap == outBitmap) {
+            // a canvas can't draw a bitmap onto itself
+            styleByRows(matrix, bitmap, outBitmap, null);
+        } else {
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            paint.setColorFilter(ColorFilterCache.get(matrix));
+            outBitmap.eraseColor(Color.TRANSPARENT);
+            Canvas canvas = new Canvas(outBitmap);
+            canvas.drawBitmap(bitmap, null, new Rect(0, 0, outBitmap.getWidth(), outBitmap.getHeight()), paint);
+        }
+        metrics.onBitmapRendered(elapsedSince(metrics, start), 0);
+        return outBitmap;
+    }
+
+    /**
+     * Same as addStyleToBitmap(Bitmap bitmap, Bitmap outBitmap, int mode, int brightness, float contrast, float saturation),
+     * but the pixels are styled on the CPU by the given PixelStyler.
+     * @return outBitmap
+     */
+    public static Bitmap addStyleToBitmap(Bitmap bitmap, Bitmap outBitmap, int mode, int brightness, float contrast, float saturation, PixelStyler pixelStyler) {
+        checkStyleParams(mode, brightness, contrast, saturation);
+        if (pixelStyler == null) {
+            throw new NullPointerException("pixelStyler can not be null");
+        }
+        return addStyleToBitmap(bitmap, outBitmap, pixelStyler.kernelFor(calculateMatrix(mode, brightness, contrast, saturation)), pixelStyler);
+    }
+
+    /**
+     * Method to style bitmap with any PixelKernel, e.g. ToneCurve.kernelFor(matrix) for a style and a tone curve
+     * in one pass, or CubeLut.getKernel(interpolation) for a 3D lookup table.
+     * The pixels are styled on the CPU, using all threads of the given PixelStyler.
+     *
+     * @param bitmap Bitmap object to style
+     * @param outBitmap mutable ARGB_8888 bitmap of the same size as bitmap, its content is replaced. It may be bitmap itself
+     * @param kernel the kernel to apply to every pixel
+     * @param pixelStyler PixelStyler to run on, it can be shared by many calls
+     * @return outBitmap
+     */
+    public static Bitmap addStyleToBitmap(Bitmap bitmap, Bitmap outBitmap, PixelKernel kernel, PixelStyler pixelStyler) {
+        if (kernel == null) {
+            throw new NullPointerException("kernel can not be null");
+        }
+        if (pixelStyler == null) {
+            throw new NullPointerException("pixelStyler can not be null");
+        }
+        checkOutBitmap(bitmap, outBitmap);
+        StylerMetrics metrics = globalMetrics;
+        long start = startTiming(metrics);
+        styleByRows(kernel, bitmap, outBitmap, pixelStyler);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), 0);
+        return outBitmap;
+    }
+
+    /**
+     * Method to color grade bitmap with a 3D lookup table, e.g. a film emulation loaded from a .cube file.
+     * The pixels are styled on the CPU, using all threads of the given PixelStyler.
+     *
+     * @param bitmap Bitmap object to style, it is not changed, you should use the returned bitmap object
+     * @param lut the table to apply, see CubeLut.load(File)
+     * @param interpolation how colors between the table's entries are computed
+     * @param pixelStyler PixelStyler to run on, it can be shared by many calls
+     * @return a new ARGB_8888 bitmap with style added
+     */
+    public static Bitmap addStyleToBitmap(Bitmap bitmap, CubeLut lut, CubeLut.Interpolation interpolation, PixelStyler pixelStyler) {
+        if (lut == null) {
+            throw new NullPointerException("lut can not be null");
+        }
+        if (pixelStyler == null) {
+            throw new NullPointerException("pixelStyler can not be null");
+        }
+        StylerMetrics metrics = globalMetrics;
+        long start = startTiming(metrics);
+        Bitmap newBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+        styleByRows(lut.getKernel(interpolation), bitmap, newBitmap, pixelStyler);
+        metrics.onBitmapRendered(elapsedSince(metrics, start), newBitmap.getByteCount());
+        return newBitmap;
+    }
+
+    /**
+     * Same as addStyleToBitmap(Bitmap bitmap, CubeLut lut, CubeLut.Interpolation interpolation, PixelStyler pixelStyler),
+     * but the styled pixels are written into outBitmap, which may be bitmap itself to style it in place.
+     * @return outBitmap
+     */
+    public static Bitmap addStyleToBitmap(Bitmap bitmap, Bitmap outBitmap, CubeLut lut, CubeLut.Interpolation interpolation,
+                                          PixelStyler pixelStyler) {
+        if (lut == null) {
+            throw new NullPointerException("lut can not be null");
+        }
+        return addStyleToBitmap(bitmap, outBitmap, lut.getKernel(interpolation), pixelStyler);
+    }
+
+    private static void styleByRows(float[] matrix, Bitmap bitmap, Bitmap outBitmap, PixelStyler pixelStyler) {
+        PixelKernel kernel = pixelStyler != null ? pixelStyler.kernelFor(matrix) : PixelKernel.forMatrix(matrix);
+        styleByRows(kernel, bitmap, outBitmap, pixelStyler);
+    }
+
+    /**
+     * Styles bitmap into outBitmap a few rows at a time, so only a small pixel buffer is needed even for huge bitmaps.
+     */
+    private static void styleByRows(PixelKernel kernel, Bitmap bitmap, Bitmap outBitmap, PixelStyler pixelStyler) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int rowsPerPass = Math.max(1, Math.min(height, MAX_PIXELS_PER_PASS / width));
+        int[] pixels = new int[width * rowsPerPass];
+        for (int y = 0; y < height; y += rowsPerPass) {
+            int rows = Math.min(rowsPerPass, height - y);
+            bitmap.getPixels(pixels, 0, width, 0, y, width, rows);
+            if (pixelStyler != null) {
+                pixelStyler.apply(kernel, pixels, pixels, width, rows);
+            } else {
+                kernel.apply(pixels, 0, pixels, 0, width * rows);
+            }
+            outBitmap.setPixels(pixels, 0, width, 0, y, width, rows);
+        }
+    }
+
+    private static void checkOutBitmap(Bitmap bitmap, Bitmap outBitmap) {
+        if (outBitmap == null) {
+            throw new NullPointerException("outBitmap can not be null");
+        }
+        if (!outBitmap.isMutable() || outBitmap.isRecycled()) {
+            throw new IllegalArgumentException("outBitmap must be mutable and not recycled");
+        }
+        if (outBitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            throw new IllegalArgumentException("outBitmap's config must be Bitmap.Config.ARGB_8888");
+        }
+        if (outBitmap.getWidth() != bitmap.getWidth() || outBitmap.getHeight() != bitmap.getHeight()) {
+            throw new IllegalArgumentException("outBitmap's size must be " + bitmap.getWidth() + "x" + bitmap.getHeight()
+                    + ", got " + outBitmap.getWidth() + "x" + outBitmap.getHeight());
+        }
+    }
+
+    /**
+     * Same as addStyleToBitmap(Context context, Bitmap bitmap, int mode, int brightness, float contrast, float saturation),
+     * but the bitmap is rendered on the given executor and delivered to callback on the main thread.
+     * @return task which can be used to cancel the request
+     */
+    public static StyleTask addStyleToBitmapAsync(final Context context, final Bitmap bitmap, final int mode, final int brightness,
+                                                  final float contrast, final float saturation, Executor executor, BitmapCallback callback) {
+        checkStyleParams(mode, brightness, contrast, saturation);
+        return new StyleTask(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return addStyleToBitmap(context, bitmap, mode, brightness, contrast, saturation);
+            }
+        }, callback).submit(executor);
+    }
+
+    private static void checkStyleParams(int mode, int brightness, float contrast, float saturation) {
         if (saturation != 1 && mode != Mode.SATURATION && mode != Mode.NONE) {
             throw new IllegalArgumentException("saturation must be 1.0 when mode is not Styler.Mode.SATURATION");
         }
@@ -414,14 +1204,6 @@ public class Styler {
         if (saturation < 0) {
             throw new IllegalArgumentException("saturation can't be smaller than 0");
         }
-        Bitmap newBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(newBitmap);
-        context = context.getApplicationContext();
-        BitmapDrawable drawable = new BitmapDrawable(context.getResources(), bitmap);
-        drawable.setColorFilter(new ColorMatrixColorFilter(calculateMatrix(mode, brightness, contrast, saturation)));
-        drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
-        drawable.draw(canvas);
-        return newBitmap;
     }
 
     private static class DrawableHolder {
@@ -462,6 +1244,10 @@ public class Styler {
         private int mode = Mode.NONE;
         private DrawableHolder drawableHolder;
         private AnimationListener listener;
+        private boolean coalesceUpdates = false;
+        private boolean useSharedAnimationDriver = false;
+        private boolean useLayerDuringAnimation = false;
+        private StylerMetrics metrics = StylerMetrics.NONE;
 
         public Styler build() {
             return new Styler(this);
@@ -544,6 +1330,46 @@ public class Styler {
             this.listener = listener;
             return this;
         }
+
+        /**
+         * See Styler.setCoalesceUpdates(boolean)
+         * @param coalesceUpdates
+         * @return
+         */
+        public Builder setCoalesceUpdates(boolean coalesceUpdates) {
+            this.coalesceUpdates = coalesceUpdates;
+            return this;
+        }
+
+        /**
+         * See Styler.setUseSharedAnimationDriver(boolean)
+         * @param useSharedAnimationDriver
+         * @return
+         */
+        public Builder setUseSharedAnimationDriver(boolean useSharedAnimationDriver) {
+            this.useSharedAnimationDriver = useSharedAnimationDriver;
+            return this;
+        }
+
+        /**
+         * See Styler.setUseLayerDuringAnimation(boolean)
+         * @param useLayerDuringAnimation
+         * @return
+         */
+        public Builder setUseLayerDuringAnimation(boolean useLayerDuringAnimation) {
+            this.useLayerDuringAnimation = useLayerDuringAnimation;
+            return this;
+        }
+
+        /**
+         * See Styler.setMetrics(StylerMetrics)
+         * @param metrics
+         * @return
+         */
+        public Builder setMetrics(StylerMetrics metrics) {
+            this.metrics = metrics != null ? metrics : StylerMetrics.NONE;
+            return this;
+        }
     }
 
     public static class Mode {
@@ -559,26 +1385,36 @@ public class Styler {
         public static final int KODACHROME = 8;
         public static final int TECHNICOLOR = 9;
 
+        /**
+         * @return true for NONE and the id of every preset in StylePresets, built-in or registered
+         */
         static boolean hasMode(int mode) {
-            switch (mode) {
-                case Mode.NONE:
-                case Mode.GREY_SCALE:
-                case Mode.INVERT:
-                case Mode.RGB_TO_BGR:
-                case Mode.SEPIA:
-                case Mode.BRIGHT:
-                case Mode.BLACK_AND_WHITE:
-                case Mode.VINTAGE_PINHOLE:
-                case Mode.KODACHROME:
-                case Mode.TECHNICOLOR:
-                case Mode.SATURATION:
-                    return true;
-                default:
-                    return false;
-            }
+            return mode == NONE || StylePresets.contains(mode);
         }
     }
 
+    /**
+     * Receives bitmaps rendered in the background, both methods are called on the main thread.
+     */
+    public interface BitmapCallback {
+        void onBitmapReady(Bitmap bitmap);
+
+        /**
+         * @param error what rendering threw, e.g. an OutOfMemoryError for a bitmap too large for the heap
+         */
+        void onFailure(Throwable error);
+    }
+
+    /**
+     * Receives the bitmaps of Styler.getBitmapProgressive, all methods are called on the main thread.
+     */
+    public interface ProgressiveCallback extends BitmapCallback {
+        /**
+         * @param preview downscaled bitmap with the requested style, onBitmapReady() follows with the full size one
+         */
+        void onPreviewReady(Bitmap preview);
+    }
+
     public interface AnimationListener {
         void onAnimationStart();
         /**
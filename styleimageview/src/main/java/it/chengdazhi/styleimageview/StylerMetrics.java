@@ -0,0 +1,51 @@
+package it.chengdazhi.styleimageview;
+
+/**
+ * Receives timing and allocation metrics from Stylers, set with Styler.setMetrics(StylerMetrics).
+ * StylerMetricsRecorder keeps them as histograms, or implement this to forward them to your own monitoring.
+ *
+ * Bitmaps may be rendered on background threads, so implementations have to be thread safe.
+ * When no metrics are set, StylerMetrics.NONE is used and nothing is measured at all.
+ */
+public interface StylerMetrics {
+    StylerMetrics NONE = new StylerMetrics() {
+        @Override
+        public void onMatrixComputed(long nanos) {
+        }
+
+        @Override
+        public void onFilterApplied(long nanos) {
+        }
+
+        @Override
+        public void onBitmapRendered(long nanos, long allocatedBytes) {
+        }
+
+        @Override
+        public void onAnimationFinished(int frameCount, int droppedFrameCount) {
+        }
+    };
+
+    /**
+     * @param nanos time spent computing the final matrix of a style
+     */
+    void onMatrixComputed(long nanos);
+
+    /**
+     * @param nanos time spent setting a color filter, for a style or an animation frame
+     */
+    void onFilterApplied(long nanos);
+
+    /**
+     * @param nanos time spent rendering a styled bitmap
+     * @param allocatedBytes byte count of the bitmap allocated for the result, 0 if it was rendered into a given bitmap
+     */
+    void onBitmapRendered(long nanos, long allocatedBytes);
+
+    /**
+     * Called once per animation, when it ends or is retargeted
+     * @param frameCount frames the animation drew
+     * @param droppedFrameCount frames skipped between them, assuming a 60 fps display
+     */
+    void onAnimationFinished(int frameCount, int droppedFrameCount);
+}
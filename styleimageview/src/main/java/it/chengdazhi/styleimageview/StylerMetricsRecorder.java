@@ -0,0 +1,168 @@
+package it.chengdazhi.styleimageview;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StylerMetrics keeping latencies in histograms and summing everything else, for reading them out later.
+ * One recorder can be shared by many Stylers.
+ */
+public class StylerMetricsRecorder implements StylerMetrics {
+    private final Histogram matrixLatency = new Histogram();
+    private final Histogram filterLatency = new Histogram();
+    private final Histogram renderLatency = new Histogram();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong animationCount = new AtomicLong();
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong droppedFrameCount = new AtomicLong();
+
+    @Override
+    public void onMatrixComputed(long nanos) {
+        matrixLatency.record(nanos);
+    }
+
+    @Override
+    public void onFilterApplied(long nanos) {
+        filterLatency.record(nanos);
+    }
+
+    @Override
+    public void onBitmapRendered(long nanos, long allocatedBytes) {
+        renderLatency.record(nanos);
+        this.allocatedBytes.addAndGet(allocatedBytes);
+    }
+
+    @Override
+    public void onAnimationFinished(int frameCount, int droppedFrameCount) {
+        animationCount.incrementAndGet();
+        this.frameCount.addAndGet(frameCount);
+        this.droppedFrameCount.addAndGet(droppedFrameCount);
+    }
+
+    public Histogram getMatrixLatency() {
+        return matrixLatency;
+    }
+
+    public Histogram getFilterLatency() {
+        return filterLatency;
+    }
+
+    public Histogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    /**
+     * @return total byte count of the bitmaps allocated for styled results
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long getAnimationCount() {
+        return animationCount.get();
+    }
+
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    public long getDroppedFrameCount() {
+        return droppedFrameCount.get();
+    }
+
+    public void reset() {
+        matrixLatency.reset();
+        filterLatency.reset();
+        renderLatency.reset();
+        allocatedBytes.set(0);
+        animationCount.set(0);
+        frameCount.set(0);
+        droppedFrameCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "StylerMetrics{matrix=" + matrixLatency + ", filter=" + filterLatency + ", render=" + renderLatency
+                + ", allocated=" + getAllocatedBytes() + "B, animations=" + getAnimationCount()
+                + ", frames=" + getFrameCount() + ", dropped=" + getDroppedFrameCount() + "}";
+    }
+
+    /**
+     * Latency histogram with power of two buckets: bucket i counts latencies in [2^(i-1), 2^i) microseconds.
+     * Percentiles are reported as the upper bound of their bucket, so they are accurate within a factor of 2.
+     */
+    public static class Histogram {
+        private static final int BUCKET_COUNT = 32;
+
+        private final long[] buckets = new long[BUCKET_COUNT];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        synchronized void record(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets[bucket]++;
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+
+        synchronized void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = 0;
+            }
+            count = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized float getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6F / count;
+        }
+
+        public synchronized float getMaxMillis() {
+            return maxNanos / 1e6F;
+        }
+
+        /**
+         * @param percentile in [0, 100]
+         * @return upper bound of the bucket the percentile falls in
+         */
+        public synchronized float getPercentileMillis(float percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be in [0, 100]");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min((1L << i) / 1e3F, getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+
+        /**
+         * @return counts of the buckets, bucket i counts latencies in [2^(i-1), 2^i) microseconds
+         */
+        public synchronized long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "{count=" + count + ", mean=" + getMeanMillis() + "ms, p50=" + getPercentileMillis(50)
+                    + "ms, p99=" + getPercentileMillis(99) + "ms, max=" + getMaxMillis() + "ms}";
+        }
+    }
+}
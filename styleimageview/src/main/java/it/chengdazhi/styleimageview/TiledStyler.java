@@ -0,0 +1,118 @@
+package it.chengdazhi.styleimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.io.IOException;
+
+/**
+ * Styles images too large to be decoded at once, one tile at a time.
+ * Tiles are decoded through a BitmapRegionDecoder, styled with the same matrix and handed to a TileSink,
+ * so the memory needed is a few tiles no matter how large the image is.
+ */
+public class TiledStyler {
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private final PixelKernel kernel;
+    private final int tileSize;
+
+    /**
+     * @param mode
+     * @param brightness if you don't want to change brightness, pass 0
+     * @param contrast if you don't want to change contrast, pass 1
+     * @param saturation if you don't want to change saturation, pass 1. If saturation is set, then the mode must be Styler.Mode.SATURATION
+     */
+    public TiledStyler(int mode, int brightness, float contrast, float saturation) {
+        this(Styler.calculateStyleMatrix(mode, brightness, contrast, saturation), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * @param matrix the final color matrix to apply
+     * @param tileSize width and height of the tiles, tiles at the right and bottom edges may be smaller
+     */
+    public TiledStyler(float[] matrix, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be bigger than 0");
+        }
+        this.kernel = PixelKernel.forMatrix(matrix);
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Styles the whole image of decoder tile by tile, row by row from the top left.
+     * The styled tile handed to sink is reused for later tiles of the same size and recycled once this method returns,
+     * so the sink has to encode or copy it before returning.
+     * @throws IOException thrown by the sink, or if a region can't be decoded
+     */
+    public void style(BitmapRegionDecoder decoder, TileSink sink) throws IOException {
+        if (sink == null) {
+            throw new NullPointerException("sink can not be null");
+        }
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        int[] pixels = new int[tileSize * tileSize];
+        // decoded regions are immutable, so styled pixels go into mutable tiles: full, right edge, bottom edge and corner
+        Bitmap[] styledTiles = new Bitmap[4];
+        Rect region = new Rect();
+        try {
+            for (int top = 0; top < height; top += tileSize) {
+                for (int left = 0; left < width; left += tileSize) {
+                    region.set(left, top, Math.min(width, left + tileSize), Math.min(height, top + tileSize));
+                    Bitmap tile = decoder.decodeRegion(region, options);
+                    if (tile == null) {
+                        throw new IOException("failed to decode region " + region);
+                    }
+                    Bitmap styledTile;
+                    try {
+                        styledTile = getStyledTile(styledTiles, region.width(), region.height());
+                        styleTile(tile, styledTile, pixels);
+                    } finally {
+                        tile.recycle();
+                    }
+                    sink.onTile(region, styledTile);
+                }
+            }
+        } finally {
+            for (Bitmap styledTile : styledTiles) {
+                if (styledTile != null) {
+                    styledTile.recycle();
+                }
+            }
+        }
+    }
+
+    private Bitmap getStyledTile(Bitmap[] styledTiles, int width, int height) {
+        int index = (width < tileSize ? 1 : 0) + (height < tileSize ? 2 : 0);
+        if (styledTiles[index] == null) {
+            styledTiles[index] = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        return styledTiles[index];
+    }
+
+    private void styleTile(Bitmap tile, Bitmap styledTile, int[] pixels) {
+        int width = tile.getWidth();
+        int height = tile.getHeight();
+        tile.getPixels(pixels, 0, width, 0, 0, width, height);
+        kernel.apply(pixels, 0, pixels, 0, width * height);
+        styledTile.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    /**
+     * Receives the styled tiles in order, for example to feed an encoder
+     */
+    public interface TileSink {
+        /**
+         * @param region position of the tile in the image, only valid during this call
+         * @param tile the styled tile, reused for the next tile of the same size after this call returns
+         */
+        void onTile(Rect region, Bitmap tile) throws IOException;
+    }
+}
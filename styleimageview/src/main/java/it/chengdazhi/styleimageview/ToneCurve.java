@@ -0,0 +1,345 @@
+package it.chengdazhi.styleimageview;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tone curves for gamma, levels or S-curve adjustments, which the linear brightness and contrast can't express.
+ *
+ * A curve goes through control points given per channel, plus an RGB curve applied to all three channels after them.
+ * It is compiled once into a 256 entry table per channel, and tables are cached by the curve's points, so equal
+ * curves share them. kernelFor(float[]) fuses the tables with a color matrix, so a matrix and curves together
+ * still cost a single pass over the pixels. Alpha is kept as is.
+ */
+public final class ToneCurve {
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<Key, byte[][]> CACHE = new LinkedHashMap<Key, byte[][]>(CACHE_SIZE, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, byte[][]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final Key key;
+    private byte[][] tables;
+
+    private ToneCurve(Builder builder) {
+        key = new Key(builder.rgbPoints, builder.redPoints, builder.greenPoints, builder.bluePoints);
+    }
+
+    /**
+     * @param gamma values above 1 brighten the midtones, values below 1 darken them
+     * @return a curve applying gamma to all three channels
+     */
+    public static ToneCurve gamma(float gamma) {
+        if (!(gamma > 0)) {
+            throw new IllegalArgumentException("gamma must be bigger than 0");
+        }
+        return new Builder().setRgbPoints(gammaPoints(0, 255, gamma)).build();
+    }
+
+    /**
+     * Same as the levels tool of image editors: black and white are stretched to 0 and 255, then gamma is applied.
+     * @param black input value mapped to 0
+     * @param white input value mapped to 255
+     * @param gamma midtone gamma, pass 1 to keep it linear
+     */
+    public static ToneCurve levels(int black, int white, float gamma) {
+        if (black < 0 || white > 255 || black >= white) {
+            throw new IllegalArgumentException("levels need 0 <= black < white <= 255");
+        }
+        if (!(gamma > 0)) {
+            throw new IllegalArgumentException("gamma must be bigger than 0");
+        }
+        return new Builder().setRgbPoints(gammaPoints(black, white, gamma)).build();
+    }
+
+    private static float[] gammaPoints(int black, int white, float gamma) {
+        // one point per input value, the power curve is too steep near black for a sparse spline to follow
+        int count = white - black + 1;
+        float[] points = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            float t = i / (float) (count - 1);
+            points[i * 2] = black + i;
+            points[i * 2 + 1] = (float) Math.pow(t, 1 / gamma) * 255;
+        }
+        return points;
+    }
+
+    /**
+     * Returns a kernel applying matrix and then this curve in one pass.
+     * If the matrix is separable by channel, both are folded into one lookup table per channel.
+     */
+    public PixelKernel kernelFor(float[] matrix) {
+        StyleMatrixEngine.checkMatrix(matrix);
+        byte[][] tables = getTables();
+        if (ChannelLut.isSeparable(matrix)) {
+            byte[] red = new byte[256];
+            byte[] green = new byte[256];
+            byte[] blue = new byte[256];
+            for (int i = 0; i < 256; i++) {
+                red[i] = tables[0][StyleMatrixEngine.clamp(matrix[0] * i + matrix[4])];
+                green[i] = tables[1][StyleMatrixEngine.clamp(matrix[6] * i + matrix[9])];
+                blue[i] = tables[2][StyleMatrixEngine.clamp(matrix[12] * i + matrix[14])];
+            }
+            return new ChannelLut(red, green, blue);
+        }
+        return new CurveMatrixKernel(matrix, tables);
+    }
+
+    /**
+     * @return the kernel of this curve alone
+     */
+    public PixelKernel getKernel() {
+        byte[][] tables = getTables();
+        return new ChannelLut(tables[0], tables[1], tables[2]);
+    }
+
+    /**
+     * Copies the compiled table of channel into out
+     * @param channel 0 for red, 1 for green and 2 for blue
+     * @return out, holding the output value of every input value
+     */
+    public byte[] getTable(int channel, byte[] out) {
+        if (channel < 0 || channel > 2) {
+            throw new IllegalArgumentException("channel must be 0, 1 or 2");
+        }
+        System.arraycopy(getTables()[channel], 0, out, 0, 256);
+        return out;
+    }
+
+    private synchronized byte[][] getTables() {
+        if (tables == null) {
+            synchronized (CACHE) {
+                tables = CACHE.get(key);
+                if (tables == null) {
+                    tables = compile(key);
+                    CACHE.put(key, tables);
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static byte[][] compile(Key key) {
+        float[] rgb = evaluate(key.rgbPoints);
+        float[] red = evaluate(key.redPoints);
+        float[] green = evaluate(key.greenPoints);
+        float[] blue = evaluate(key.bluePoints);
+        byte[][] tables = new byte[3][256];
+        for (int i = 0; i < 256; i++) {
+            tables[0][i] = (byte) StyleMatrixEngine.clamp(rgb[StyleMatrixEngine.clamp(red[i])]);
+            tables[1][i] = (byte) StyleMatrixEngine.clamp(rgb[StyleMatrixEngine.clamp(green[i])]);
+            tables[2][i] = (byte) StyleMatrixEngine.clamp(rgb[StyleMatrixEngine.clamp(blue[i])]);
+        }
+        return tables;
+    }
+
+    /**
+     * Evaluates the monotone cubic spline through points at every input value, or the identity if points is null.
+     * The Fritsch-Carlson tangents keep the curve from overshooting between points, so increasing points give
+     * an increasing curve. Inputs outside the first and last point take their output.
+     */
+    private static float[] evaluate(float[] points) {
+        float[] values = new float[256];
+        if (points == null) {
+            for (int i = 0; i < 256; i++) {
+                values[i] = i;
+            }
+            return values;
+        }
+        int n = points.length / 2;
+        float[] x = new float[n];
+        float[] y = new float[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = points[i * 2];
+            y[i] = points[i * 2 + 1];
+        }
+        float[] slopes = new float[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            slopes[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
+        }
+        float[] tangents = new float[n];
+        tangents[0] = slopes[0];
+        tangents[n - 1] = slopes[n - 2];
+        for (int i = 1; i < n - 1; i++) {
+            tangents[i] = slopes[i - 1] * slopes[i] <= 0 ? 0 : (slopes[i - 1] + slopes[i]) / 2;
+        }
+        for (int i = 0; i < n - 1; i++) {
+            if (slopes[i] == 0) {
+                tangents[i] = 0;
+                tangents[i + 1] = 0;
+                continue;
+            }
+            float a = tangents[i] / slopes[i];
+            float b = tangents[i + 1] / slopes[i];
+            float length = a * a + b * b;
+            if (length > 9) {
+                float scale = (float) (3 / Math.sqrt(length));
+                tangents[i] = scale * a * slopes[i];
+                tangents[i + 1] = scale * b * slopes[i];
+            }
+        }
+        int segment = 0;
+        for (int i = 0; i < 256; i++) {
+            if (i <= x[0]) {
+                values[i] = y[0];
+                continue;
+            }
+            if (i >= x[n - 1]) {
+                values[i] = y[n - 1];
+                continue;
+            }
+            while (i > x[segment + 1]) {
+                segment++;
+            }
+            float h = x[segment + 1] - x[segment];
+            float t = (i - x[segment]) / h;
+            float t2 = t * t;
+            float t3 = t2 * t;
+            values[i] = (2 * t3 - 3 * t2 + 1) * y[segment] + (t3 - 2 * t2 + t) * h * tangents[segment]
+                    + (-2 * t3 + 3 * t2) * y[segment + 1] + (t3 - t2) * h * tangents[segment + 1];
+        }
+        return values;
+    }
+
+    private static float[] checkPoints(float[] points) {
+        if (points == null) {
+            return null;
+        }
+        if (points.length < 4 || points.length % 2 != 0) {
+            throw new IllegalArgumentException("points must be at least 2 (x, y) pairs");
+        }
+        for (int i = 0; i < points.length; i++) {
+            if (!(points[i] >= 0 && points[i] <= 255)) {
+                throw new IllegalArgumentException("point values must be in [0, 255]");
+            }
+            if (i % 2 == 0 && i > 0 && !(points[i] > points[i - 2])) {
+                throw new IllegalArgumentException("point x values must be increasing");
+            }
+        }
+        return points.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ToneCurve && key.equals(((ToneCurve) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    /**
+     * Matrix multiply followed by a table read per channel, in the same loop
+     */
+    private static final class CurveMatrixKernel extends PixelKernel {
+        private final float[] matrix;
+        private final byte[] red;
+        private final byte[] green;
+        private final byte[] blue;
+
+        CurveMatrixKernel(float[] matrix, byte[][] tables) {
+            this.matrix = StyleMatrixEngine.copy(matrix, new float[StyleMatrixEngine.MATRIX_SIZE]);
+            red = tables[0];
+            green = tables[1];
+            blue = tables[2];
+        }
+
+        @Override
+        public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            StyleMatrixEngine.checkRange(src, srcOffset, count);
+            StyleMatrixEngine.checkRange(dst, dstOffset, count);
+            float[] m = matrix;
+            for (int i = 0; i < count; i++) {
+                int color = src[srcOffset + i];
+                int a = color >>> 24;
+                int r = (color >> 16) & 0xFF;
+                int g = (color >> 8) & 0xFF;
+                int b = color & 0xFF;
+                int newR = StyleMatrixEngine.clamp(m[0] * r + m[1] * g + m[2] * b + m[3] * a + m[4]);
+                int newG = StyleMatrixEngine.clamp(m[5] * r + m[6] * g + m[7] * b + m[8] * a + m[9]);
+                int newB = StyleMatrixEngine.clamp(m[10] * r + m[11] * g + m[12] * b + m[13] * a + m[14]);
+                int newA = StyleMatrixEngine.clamp(m[15] * r + m[16] * g + m[17] * b + m[18] * a + m[19]);
+                dst[dstOffset + i] = (newA << 24) | ((red[newR] & 0xFF) << 16)
+                        | ((green[newG] & 0xFF) << 8) | (blue[newB] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Definition of a curve, its points per channel
+     */
+    private static final class Key {
+        private final float[] rgbPoints;
+        private final float[] redPoints;
+        private final float[] greenPoints;
+        private final float[] bluePoints;
+        private final int hash;
+
+        Key(float[] rgbPoints, float[] redPoints, float[] greenPoints, float[] bluePoints) {
+            this.rgbPoints = rgbPoints;
+            this.redPoints = redPoints;
+            this.greenPoints = greenPoints;
+            this.bluePoints = bluePoints;
+            hash = Arrays.hashCode(new int[] {Arrays.hashCode(rgbPoints), Arrays.hashCode(redPoints),
+                    Arrays.hashCode(greenPoints), Arrays.hashCode(bluePoints)});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Arrays.equals(rgbPoints, other.rgbPoints) && Arrays.equals(redPoints, other.redPoints)
+                    && Arrays.equals(greenPoints, other.greenPoints) && Arrays.equals(bluePoints, other.bluePoints);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Points are (x, y) pairs in [0, 255] with increasing x, e.g. {0, 0, 64, 48, 192, 208, 255, 255} for an S-curve.
+     * Channels without points are left as they are.
+     */
+    public static class Builder {
+        private float[] rgbPoints;
+        private float[] redPoints;
+        private float[] greenPoints;
+        private float[] bluePoints;
+
+        public ToneCurve build() {
+            return new ToneCurve(this);
+        }
+
+        /**
+         * Sets the curve applied to red, green and blue, after their own curves
+         */
+        public Builder setRgbPoints(float... points) {
+            rgbPoints = checkPoints(points);
+            return this;
+        }
+
+        public Builder setRedPoints(float... points) {
+            redPoints = checkPoints(points);
+            return this;
+        }
+
+        public Builder setGreenPoints(float... points) {
+            greenPoints = checkPoints(points);
+            return this;
+        }
+
+        public Builder setBluePoints(float... points) {
+            bluePoints = checkPoints(points);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class AnimationFrameMatrixTest {
+    private final float[] start = new float[20];
+    private final float[] end = new float[20];
+    private final float[] current = StyleMatrixs.common();
+    private final float[] filterMatrix = new float[20];
+    private final AnimationFrameMatrix frameMatrix = new AnimationFrameMatrix(start, end, current, filterMatrix);
+
+    @Test
+    public void interpolateGoesFromCurrentToTarget() {
+        frameMatrix.start(StyleMatrixs.SEPIA);
+        frameMatrix.interpolate(0);
+        assertArrayEquals(StyleMatrixs.COMMON, current, 0);
+        assertArrayEquals(StyleMatrixs.COMMON, filterMatrix, 0);
+        frameMatrix.interpolate(1);
+        assertArrayEquals(StyleMatrixs.SEPIA, current, 0);
+        assertArrayEquals(StyleMatrixs.SEPIA, filterMatrix, 0);
+    }
+
+    @Test
+    public void retargetStartsFromTheFrameShown() {
+        frameMatrix.start(StyleMatrixs.INVERT);
+        frameMatrix.interpolate(0.5F);
+        float[] shown = current.clone();
+        frameMatrix.start(StyleMatrixs.SEPIA);
+        frameMatrix.interpolate(0);
+        assertArrayEquals(shown, current, 0);
+    }
+
+    @Test
+    public void setShowsTheGivenMatrix() {
+        frameMatrix.set(StyleMatrixs.GREY_SCALE);
+        assertArrayEquals(StyleMatrixs.GREY_SCALE, current, 0);
+        assertArrayEquals(StyleMatrixs.GREY_SCALE, filterMatrix, 0);
+    }
+}
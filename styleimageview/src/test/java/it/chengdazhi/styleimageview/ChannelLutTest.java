@@ -0,0 +1,99 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelLutTest {
+    private static final int[] BRIGHTNESSES = {-255, -100, 0, 100, 255};
+    private static final float[] CONTRASTS = {0, 0.3F, 1, 2.5F, 10};
+
+    private final Random random = new Random(13);
+
+    @Test
+    public void matchesMatrixMultiplyForSeparableStyles() {
+        int[] pixels = testPixels();
+        float[][] styles = {StyleMatrixs.COMMON, StyleMatrixs.INVERT};
+        float[] matrix = new float[20];
+        for (float[] style : styles) {
+            for (int brightness : BRIGHTNESSES) {
+                for (float contrast : CONTRASTS) {
+                    StyleMatrixEngine.calculate(style, brightness, contrast, matrix);
+                    assertMatchesMatrixMultiply(matrix, pixels);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesMatrixMultiplyForRandomSeparableMatrices() {
+        int[] pixels = testPixels();
+        for (int i = 0; i < 50; i++) {
+            float[] matrix = StyleMatrixs.common();
+            for (int channel = 0; channel < 3; channel++) {
+                matrix[channel * 6] = random.nextFloat() * 6 - 3;
+                matrix[channel * 5 + 4] = random.nextFloat() * 600 - 300;
+            }
+            assertMatchesMatrixMultiply(matrix, pixels);
+        }
+    }
+
+    @Test
+    public void isSeparableOnlyAcceptsChannelWiseMatrices() {
+        assertTrue(ChannelLut.isSeparable(StyleMatrixs.COMMON));
+        assertTrue(ChannelLut.isSeparable(StyleMatrixs.INVERT));
+        assertFalse(ChannelLut.isSeparable(StyleMatrixs.SEPIA));
+        assertFalse(ChannelLut.isSeparable(StyleMatrixs.RGB_TO_BGR));
+        float[] alphaChanged = StyleMatrixs.common();
+        alphaChanged[18] = 0.5F;
+        assertFalse(ChannelLut.isSeparable(alphaChanged));
+        float[] alphaFromRed = StyleMatrixs.common();
+        alphaFromRed[15] = 1;
+        assertFalse(ChannelLut.isSeparable(alphaFromRed));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void forMatrixRejectsOtherMatrices() {
+        ChannelLut.forMatrix(StyleMatrixs.SEPIA);
+    }
+
+    @Test
+    public void equalMatricesShareTables() {
+        float[] matrix = StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.invert(), 17, 1.7F);
+        assertSame(ChannelLut.forMatrix(matrix), ChannelLut.forMatrix(matrix.clone()));
+        assertSame(ChannelLut.forMatrix(matrix), PixelKernel.forMatrix(matrix));
+    }
+
+    private static void assertMatchesMatrixMultiply(float[] matrix, int[] pixels) {
+        assertTrue(ChannelLut.isSeparable(matrix));
+        int[] expected = new int[pixels.length];
+        StyleMatrixEngine.apply(matrix, pixels, 0, expected, 0, pixels.length);
+        int[] styled = new int[pixels.length];
+        ChannelLut.forMatrix(matrix).apply(pixels, 0, styled, 0, pixels.length);
+        // the tables hold exactly what the multiply computes, so there is no error to bound
+        assertArrayEquals(expected, styled);
+    }
+
+    /**
+     * Every value of every channel with a few alphas, plus random colors
+     */
+    private int[] testPixels() {
+        int[] alphas = {0, 1, 128, 255};
+        int[] pixels = new int[256 * alphas.length + 4096];
+        int index = 0;
+        for (int a : alphas) {
+            for (int v = 0; v < 256; v++) {
+                pixels[index++] = (a << 24) | (v << 16) | ((255 - v) << 8) | ((v * 7) & 0xFF);
+            }
+        }
+        while (index < pixels.length) {
+            pixels[index++] = random.nextInt();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,118 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CubeLutTest {
+
+    @Test
+    public void identityTableKeepsPixels() throws IOException {
+        int[] pixels = randomPixels(1 << 14);
+        for (int size : new int[] {2, 17, CubeLut.MAX_SIZE}) {
+            CubeLut lut = CubeLut.parse(new StringReader(identityCube(size)));
+            assertEquals(size, lut.getSize());
+            assertEquals("identity", lut.getTitle());
+            for (CubeLut.Interpolation interpolation : CubeLut.Interpolation.values()) {
+                int[] styled = new int[pixels.length];
+                lut.getKernel(interpolation).apply(pixels, 0, styled, 0, pixels.length);
+                assertArrayEquals(size + " " + interpolation, pixels, styled);
+            }
+        }
+    }
+
+    @Test
+    public void sampledMatrixIsCloseToMatrixPath() {
+        float[] matrix = StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.sepia(), 30, 1.2F);
+        int[] pixels = randomPixels(1 << 14);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] |= 0xFF000000;
+        }
+        int[] expected = new int[pixels.length];
+        StyleMatrixEngine.apply(matrix, pixels, 0, expected, 0, pixels.length);
+        CubeLut lut = CubeLut.fromMatrix(matrix, 33);
+        for (CubeLut.Interpolation interpolation : CubeLut.Interpolation.values()) {
+            int[] styled = new int[pixels.length];
+            lut.getKernel(interpolation).apply(pixels, 0, styled, 0, pixels.length);
+            int diff = maxChannelDiff(expected, styled);
+            // the matrix is linear, only clamping at the edges of the cube bends it between entries
+            assertTrue(interpolation + " differs by " + diff, diff <= 4);
+        }
+    }
+
+    @Test
+    public void rejectsSizesAboveMax() {
+        try {
+            CubeLut.parse(new StringReader("LUT_3D_SIZE " + (CubeLut.MAX_SIZE + 1) + "\n"));
+            fail("size above MAX_SIZE was accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("LUT_3D_SIZE"));
+        }
+        try {
+            CubeLut.fromMatrix(StyleMatrixs.SEPIA, CubeLut.MAX_SIZE + 1);
+            fail("size above MAX_SIZE was accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMissingEntries() throws IOException {
+        String cube = identityCube(2);
+        CubeLut.parse(new StringReader(cube.substring(0, cube.lastIndexOf("1.0 1.0 1.0"))));
+    }
+
+    @Test
+    public void clampsValuesOutsideTheDomain() throws IOException {
+        StringBuilder cube = new StringBuilder("LUT_3D_SIZE 2\n");
+        for (int i = 0; i < 8; i++) {
+            cube.append(i == 7 ? "2.0 2.0 2.0\n" : "-1.0 -1.0 -1.0\n");
+        }
+        CubeLut lut = CubeLut.parse(new StringReader(cube.toString()));
+        int[] pixels = {0xFFFFFFFF, 0xFF000000};
+        lut.getKernel(CubeLut.Interpolation.TRILINEAR).apply(pixels, 0, pixels, 0, pixels.length);
+        assertArrayEquals(new int[] {0xFFFFFFFF, 0xFF000000}, pixels);
+    }
+
+    private static String identityCube(int size) {
+        StringBuilder cube = new StringBuilder("# generated\nTITLE \"identity\"\nLUT_3D_SIZE ").append(size).append('\n');
+        for (int b = 0; b < size; b++) {
+            for (int g = 0; g < size; g++) {
+                for (int r = 0; r < size; r++) {
+                    cube.append(value(r, size)).append(' ').append(value(g, size)).append(' ').append(value(b, size)).append('\n');
+                }
+            }
+        }
+        return cube.toString();
+    }
+
+    private static String value(int index, int size) {
+        return index == size - 1 ? "1.0" : String.valueOf(index / (double) (size - 1));
+    }
+
+    private static int[] randomPixels(int count) {
+        Random random = new Random(11);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static int maxChannelDiff(int[] a, int[] b) {
+        int max = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                max = Math.max(max, Math.abs(((a[i] >>> shift) & 0xFF) - ((b[i] >>> shift) & 0xFF)));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,114 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixedPointKernelTest {
+    private static final int[] BRIGHTNESSES = {-255, -100, 0, 100, 255};
+    private static final float[] CONTRASTS = {0, 0.3F, 1, 2.5F, 10};
+
+    @Test
+    public void differsByAtMostOnePerChannel() {
+        int[] pixels = testPixels();
+        int[] exact = new int[pixels.length];
+        int[] fixed = new int[pixels.length];
+        float[] matrix = new float[20];
+        for (int mode = 0; mode < StylePresets.getCount(); mode++) {
+            for (int brightness : BRIGHTNESSES) {
+                for (float contrast : CONTRASTS) {
+                    StyleMatrixEngine.calculate(StylePresets.get(mode), brightness, contrast, matrix);
+                    assertTrue(FixedPointKernel.canRepresent(matrix));
+                    StyleMatrixEngine.apply(matrix, pixels, 0, exact, 0, pixels.length);
+                    FixedPointKernel.forMatrix(matrix).apply(pixels, 0, fixed, 0, pixels.length);
+                    int diff = maxChannelDiff(exact, fixed);
+                    assertTrue("mode " + StylePresets.getName(mode) + ", brightness " + brightness + ", contrast " + contrast
+                            + " differs by " + diff, diff <= 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void canRepresentRejectsLargeCoefficients() {
+        float[] matrix = StyleMatrixs.sepia();
+        assertTrue(FixedPointKernel.canRepresent(matrix));
+        matrix[1] = 200;
+        assertFalse(FixedPointKernel.canRepresent(matrix));
+        matrix = StyleMatrixs.sepia();
+        matrix[4] = 40000;
+        assertFalse(FixedPointKernel.canRepresent(matrix));
+        matrix = StyleMatrixs.sepia();
+        matrix[2] = Float.NaN;
+        assertFalse(FixedPointKernel.canRepresent(matrix));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void forMatrixRejectsWhatItCantRepresent() {
+        float[] matrix = StyleMatrixs.sepia();
+        matrix[0] = 1000;
+        FixedPointKernel.forMatrix(matrix);
+    }
+
+    @Test
+    public void forMatrixFallsBackToFloatKernel() {
+        float[] matrix = StyleMatrixs.sepia();
+        matrix[0] = 1000;
+        PixelKernel kernel = PixelKernel.forMatrix(matrix, true);
+        assertFalse(kernel instanceof FixedPointKernel);
+        assertFalse(kernel instanceof ChannelLut);
+        int[] pixels = testPixels();
+        int[] expected = new int[pixels.length];
+        int[] styled = new int[pixels.length];
+        StyleMatrixEngine.apply(matrix, pixels, 0, expected, 0, pixels.length);
+        kernel.apply(pixels, 0, styled, 0, pixels.length);
+        assertArrayEquals(expected, styled);
+    }
+
+    @Test
+    public void forMatrixPicksKernelByMatrix() {
+        assertTrue(PixelKernel.forMatrix(StyleMatrixs.SEPIA, true) instanceof FixedPointKernel);
+        assertFalse(PixelKernel.forMatrix(StyleMatrixs.SEPIA, false) instanceof FixedPointKernel);
+        // separable matrices use lookup tables either way
+        assertTrue(PixelKernel.forMatrix(StyleMatrixs.INVERT, true) instanceof ChannelLut);
+    }
+
+    /**
+     * Every corner of the RGB cube with a few alphas, plus random colors
+     */
+    private static int[] testPixels() {
+        int[] values = {0, 1, 127, 128, 254, 255};
+        int[] alphas = {0, 128, 255};
+        Random random = new Random(3);
+        int[] pixels = new int[values.length * values.length * values.length * alphas.length + 4096];
+        int index = 0;
+        for (int a : alphas) {
+            for (int r : values) {
+                for (int g : values) {
+                    for (int b : values) {
+                        pixels[index++] = (a << 24) | (r << 16) | (g << 8) | b;
+                    }
+                }
+            }
+        }
+        while (index < pixels.length) {
+            pixels[index++] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static int maxChannelDiff(int[] a, int[] b) {
+        int max = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int diff = Math.abs(((a[i] >>> shift) & 0xFF) - ((b[i] >>> shift) & 0xFF));
+                max = Math.max(max, diff);
+            }
+        }
+        return max;
+    }
+}
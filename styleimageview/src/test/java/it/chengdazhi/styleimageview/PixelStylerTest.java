@@ -0,0 +1,215 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class PixelStylerTest {
+    // heights below one stripe, not a multiple of the stripe count, and with a short last stripe
+    private static final int[][] SIZES = {{1, 1}, {7, 3}, {13, 15}, {5, 16}, {9, 33}, {31, 37}, {17, 100}, {3, 257}};
+
+    private final PixelStyler pixelStyler = new PixelStyler(4);
+    private final Random random = new Random(7);
+
+    @After
+    public void tearDown() {
+        pixelStyler.shutdown();
+    }
+
+    @Test
+    public void arrayOutputMatchesWholeBufferApply() {
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            int[] src = randomPixels(width * height);
+            int[] expected = new int[src.length];
+            StyleMatrixEngine.apply(StyleMatrixs.SEPIA, src, 0, expected, 0, src.length);
+
+            int[] dst = new int[src.length];
+            pixelStyler.apply(StyleMatrixs.SEPIA, src, dst, width, height);
+            assertArrayEquals(width + "x" + height, expected, dst);
+
+            pixelStyler.apply(StyleMatrixs.SEPIA, src, src, width, height);
+            assertArrayEquals(width + "x" + height + " in place", expected, src);
+        }
+    }
+
+    @Test
+    public void arrayOffsetsAreRespected() {
+        int width = 11;
+        int height = 35;
+        int[] src = randomPixels(width * height + 5);
+        int[] expected = new int[width * height];
+        StyleMatrixEngine.apply(StyleMatrixs.KODACHROME, src, 5, expected, 0, expected.length);
+        int[] dst = new int[width * height + 3];
+        pixelStyler.apply(StyleMatrixs.KODACHROME, src, 5, dst, 3, width, height);
+        int[] styled = new int[expected.length];
+        System.arraycopy(dst, 3, styled, 0, styled.length);
+        assertArrayEquals(expected, styled);
+    }
+
+    @Test
+    public void directBufferOutputMatchesWholeBufferApply() {
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            int[] pixels = randomPixels(width * height);
+            int[] expected = new int[pixels.length];
+            StyleMatrixEngine.apply(StyleMatrixs.SEPIA, pixels, 0, expected, 0, pixels.length);
+
+            IntBuffer src = directBuffer(pixels.length + 2);
+            src.position(2);
+            src.put(pixels);
+            src.position(2);
+            IntBuffer dst = directBuffer(pixels.length + 1);
+            dst.position(1);
+            assertFalse(src.hasArray() || dst.hasArray());
+            pixelStyler.apply(StyleMatrixs.SEPIA, src, dst, width, height);
+
+            assertEquals("positions are kept", 2, src.position());
+            assertEquals("positions are kept", 1, dst.position());
+            int[] styled = new int[pixels.length];
+            dst.get(styled);
+            assertArrayEquals(width + "x" + height, expected, styled);
+        }
+    }
+
+    @Test
+    public void directBufferInPlace() {
+        int width = 19;
+        int height = 41;
+        int[] pixels = randomPixels(width * height);
+        int[] expected = new int[pixels.length];
+        StyleMatrixEngine.apply(StyleMatrixs.TECHNICOLOR, pixels, 0, expected, 0, pixels.length);
+        IntBuffer buffer = directBuffer(pixels.length);
+        buffer.put(pixels);
+        buffer.rewind();
+        pixelStyler.apply(StyleMatrixs.TECHNICOLOR, buffer, buffer, width, height);
+        int[] styled = new int[pixels.length];
+        buffer.get(styled);
+        assertArrayEquals(expected, styled);
+    }
+
+    @Test
+    public void workerExceptionIsRethrown() {
+        final IllegalStateException failure = new IllegalStateException("worker stripe failed");
+        PixelKernel kernel = new PixelKernel() {
+            @Override
+            public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+                // the first stripe runs on the calling thread, every other one on a worker
+                if (srcOffset > 0) {
+                    throw failure;
+                }
+            }
+        };
+        int[] pixels = new int[10 * 64];
+        try {
+            pixelStyler.apply(kernel, pixels, pixels, 10, 64);
+            fail("the worker's exception was swallowed");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+    }
+
+    @Test
+    public void workerErrorIsRethrown() {
+        PixelKernel kernel = new PixelKernel() {
+            @Override
+            public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+                if (srcOffset > 0) {
+                    throw new OutOfMemoryError("stripe");
+                }
+            }
+        };
+        int[] pixels = new int[10 * 64];
+        try {
+            pixelStyler.apply(kernel, pixels, pixels, 10, 64);
+            fail("the worker's error was swallowed");
+        } catch (OutOfMemoryError e) {
+            assertEquals("stripe", e.getMessage());
+        }
+    }
+
+    @Test
+    public void callerStripeFailureWaitsForWorkers() {
+        final AtomicInteger finishedWorkers = new AtomicInteger();
+        final IllegalStateException failure = new IllegalStateException("caller stripe failed");
+        PixelKernel kernel = new PixelKernel() {
+            @Override
+            public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+                if (srcOffset == 0) {
+                    throw failure;
+                }
+                sleep(200);
+                finishedWorkers.incrementAndGet();
+            }
+        };
+        int[] pixels = new int[10 * 64];
+        try {
+            pixelStyler.apply(kernel, pixels, pixels, 10, 64);
+            fail("the caller stripe's exception was swallowed");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+        // 64 rows on 4 threads make 4 stripes, 3 of them on workers
+        assertEquals("returned while workers were still writing", 3, finishedWorkers.get());
+    }
+
+    @Test
+    public void workerFailureWaitsForOtherWorkers() {
+        final AtomicInteger finishedWorkers = new AtomicInteger();
+        PixelKernel kernel = new PixelKernel() {
+            @Override
+            public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+                if (srcOffset == 16 * 10) {
+                    throw new IllegalStateException("first worker stripe failed");
+                } else if (srcOffset > 0) {
+                    sleep(200);
+                    finishedWorkers.incrementAndGet();
+                }
+            }
+        };
+        int[] pixels = new int[10 * 64];
+        try {
+            pixelStyler.apply(kernel, pixels, pixels, 10, 64);
+            fail("the worker's exception was swallowed");
+        } catch (IllegalStateException e) {
+            assertEquals("first worker stripe failed", e.getMessage());
+        }
+        assertEquals("returned while workers were still writing", 2, finishedWorkers.get());
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void rejectsTooSmallArrays() {
+        pixelStyler.apply(StyleMatrixs.SEPIA, new int[10], new int[10], 4, 4);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private int[] randomPixels(int count) {
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static IntBuffer directBuffer(int count) {
+        return ByteBuffer.allocateDirect(count * 4).asIntBuffer();
+    }
+}
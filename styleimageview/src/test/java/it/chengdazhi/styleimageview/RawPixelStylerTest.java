@@ -0,0 +1,196 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RawPixelStylerTest {
+    private final PixelStyler pixelStyler = new PixelStyler(3);
+    private final float[] matrix = StyleMatrixEngine.calculate(StylePresets.getId("sepia"), 20, 1.3F, 1, new float[20]);
+    private final PixelKernel kernel = PixelKernel.forMatrix(matrix);
+    private final Random random = new Random(23);
+    private File file;
+    private File outFile;
+
+    @After
+    public void tearDown() {
+        pixelStyler.shutdown();
+        if (file != null) {
+            file.delete();
+        }
+        if (outFile != null) {
+            outFile.delete();
+        }
+    }
+
+    @Test
+    public void styleStreamsArgbRows() throws IOException {
+        int width = 37;
+        int[] pixels = randomPixels(width * 50);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = RawPixelStyler.style(Channels.newChannel(new ByteArrayInputStream(toBytes(pixels, RawPixelStyler.Format.ARGB))),
+                Channels.newChannel(out), RawPixelStyler.Format.ARGB, width, kernel);
+        assertEquals(50, rows);
+        assertArrayEquals(expected(pixels), toPixels(out.toByteArray(), RawPixelStyler.Format.ARGB));
+    }
+
+    @Test
+    public void styleStreamsRgbaRowsOverManyStripesAndShortReads() throws IOException {
+        // rows this wide only fit a few per stripe, and every read returns less than asked
+        int width = 70000;
+        int[] pixels = randomPixels(width * 10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReadableByteChannel in = shortReads(toBytes(pixels, RawPixelStyler.Format.RGBA), 10007);
+        long rows = RawPixelStyler.style(in, Channels.newChannel(out), RawPixelStyler.Format.RGBA, width, kernel);
+        assertEquals(10, rows);
+        assertArrayEquals(expected(pixels), toPixels(out.toByteArray(), RawPixelStyler.Format.RGBA));
+    }
+
+    @Test(expected = EOFException.class)
+    public void styleRejectsPartialRow() throws IOException {
+        byte[] bytes = toBytes(randomPixels(10 * 3), RawPixelStyler.Format.ARGB);
+        byte[] truncated = new byte[bytes.length - 4];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        RawPixelStyler.style(Channels.newChannel(new ByteArrayInputStream(truncated)),
+                Channels.newChannel(new ByteArrayOutputStream()), RawPixelStyler.Format.ARGB, 10, kernel);
+    }
+
+    @Test
+    public void styleMappedInPlace() throws IOException {
+        int width = 41;
+        int[] pixels = randomPixels(width * 67);
+        file = writeTempFile(toBytes(pixels, RawPixelStyler.Format.RGBA));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            RawPixelStyler.styleMapped(raf.getChannel(), RawPixelStyler.Format.RGBA, width, kernel, pixelStyler);
+        } finally {
+            raf.close();
+        }
+        assertArrayEquals(expected(pixels), toPixels(readFile(file), RawPixelStyler.Format.RGBA));
+    }
+
+    @Test
+    public void styleMappedIntoOtherFile() throws IOException {
+        int width = 29;
+        int[] pixels = randomPixels(width * 90);
+        byte[] bytes = toBytes(pixels, RawPixelStyler.Format.ARGB);
+        file = writeTempFile(bytes);
+        outFile = File.createTempFile("styled", ".argb");
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        RandomAccessFile out = new RandomAccessFile(outFile, "rw");
+        try {
+            RawPixelStyler.styleMapped(in.getChannel(), out.getChannel(), RawPixelStyler.Format.ARGB, width, kernel, pixelStyler);
+        } finally {
+            in.close();
+            out.close();
+        }
+        assertArrayEquals("source is kept", bytes, readFile(file));
+        assertArrayEquals(expected(pixels), toPixels(readFile(outFile), RawPixelStyler.Format.ARGB));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void styleMappedRejectsPartialRow() throws IOException {
+        file = writeTempFile(new byte[10 * 4 + 4]);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            RawPixelStyler.styleMapped(raf.getChannel(), RawPixelStyler.Format.ARGB, 10, kernel, pixelStyler);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int[] expected(int[] pixels) {
+        int[] expected = new int[pixels.length];
+        StyleMatrixEngine.apply(matrix, pixels, 0, expected, 0, pixels.length);
+        return expected;
+    }
+
+    private int[] randomPixels(int count) {
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static byte[] toBytes(int[] argb, RawPixelStyler.Format format) {
+        ByteBuffer buffer = ByteBuffer.allocate(argb.length * 4).order(ByteOrder.BIG_ENDIAN);
+        for (int pixel : argb) {
+            buffer.putInt(format == RawPixelStyler.Format.RGBA ? Integer.rotateLeft(pixel, 8) : pixel);
+        }
+        return buffer.array();
+    }
+
+    private static int[] toPixels(byte[] bytes, RawPixelStyler.Format format) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+        int[] argb = new int[bytes.length / 4];
+        for (int i = 0; i < argb.length; i++) {
+            int pixel = buffer.getInt();
+            argb[i] = format == RawPixelStyler.Format.RGBA ? Integer.rotateRight(pixel, 8) : pixel;
+        }
+        return argb;
+    }
+
+    private static ReadableByteChannel shortReads(byte[] bytes, final int maxRead) {
+        final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes));
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int limit = dst.limit();
+                dst.limit(Math.min(limit, dst.position() + maxRead));
+                try {
+                    return channel.read(dst);
+                } finally {
+                    dst.limit(limit);
+                }
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private static File writeTempFile(byte[] bytes) throws IOException {
+        File file = File.createTempFile("raw", ".pixels");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.write(bytes);
+        } finally {
+            raf.close();
+        }
+        return file;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return bytes;
+        } finally {
+            raf.close();
+        }
+    }
+}
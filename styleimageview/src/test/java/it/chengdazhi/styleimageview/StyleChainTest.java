@@ -0,0 +1,79 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StyleChainTest {
+    private final float[] brighter = StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.common(), 50, 1);
+
+    @Test
+    public void emptyChainIsIdentity() {
+        assertArrayEquals(StyleMatrixs.COMMON, new StyleChain().getMatrix(), 0);
+    }
+
+    @Test
+    public void productMatchesConcatInAddOrder() {
+        float[] sepia = StyleMatrixs.SEPIA;
+        float[] saturation = StyleMatrixEngine.saturation(0.4F, new float[20]);
+        StyleChain chain = new StyleChain().add(sepia).add(brighter).add(saturation);
+        // each matrix is applied after the ones before it, so it is the left operand
+        float[] expected = StyleMatrixEngine.identity(new float[20]);
+        expected = StyleMatrixEngine.concat(sepia, expected, new float[20]);
+        expected = StyleMatrixEngine.concat(brighter, expected, new float[20]);
+        expected = StyleMatrixEngine.concat(saturation, expected, new float[20]);
+        assertArrayEquals(expected, chain.getMatrix(), 0);
+    }
+
+    @Test
+    public void laterMatricesApplyAfterEarlierOnes() {
+        // brightening then inverting darkens, inverting then brightening brightens
+        assertEquals(255 - 50, new StyleChain().add(brighter).add(StyleMatrixs.INVERT).getMatrix()[4], 0);
+        assertEquals(255 + 50, new StyleChain().add(StyleMatrixs.INVERT).add(brighter).getMatrix()[4], 0);
+    }
+
+    @Test
+    public void productIsRebuiltAfterAddAndClear() {
+        StyleChain chain = new StyleChain().add(StyleMatrixs.INVERT);
+        assertArrayEquals(StyleMatrixs.INVERT, chain.getMatrix(), 0);
+        chain.add(brighter);
+        assertArrayEquals(StyleMatrixEngine.concat(brighter, StyleMatrixs.INVERT, new float[20]), chain.getMatrix(), 0);
+        chain.clear();
+        assertEquals(0, chain.size());
+        assertArrayEquals(StyleMatrixs.COMMON, chain.getMatrix(), 0);
+        chain.add(StyleMatrixs.SEPIA);
+        assertArrayEquals(StyleMatrixs.SEPIA, chain.getMatrix(), 0);
+    }
+
+    @Test
+    public void addedMatricesAreCopied() {
+        float[] matrix = StyleMatrixs.sepia();
+        StyleChain chain = new StyleChain().add(matrix);
+        matrix[0] = 7;
+        assertArrayEquals(StyleMatrixs.SEPIA, chain.getMatrix(), 0);
+        float[] out = new float[20];
+        assertSame(out, chain.getMatrix(out));
+        out[0] = 7;
+        assertArrayEquals(StyleMatrixs.SEPIA, chain.getMatrix(), 0);
+    }
+
+    @Test
+    public void addAllAppendsInOrder() {
+        StyleChain tail = new StyleChain().add(brighter).add(StyleMatrixs.INVERT);
+        StyleChain chain = new StyleChain().add(StyleMatrixs.SEPIA).addAll(tail);
+        StyleChain expected = new StyleChain().add(StyleMatrixs.SEPIA).add(brighter).add(StyleMatrixs.INVERT);
+        assertEquals(3, chain.size());
+        assertArrayEquals(expected.getMatrix(), chain.getMatrix(), 0);
+        tail.clear();
+        assertArrayEquals(expected.getMatrix(), chain.getMatrix(), 0);
+    }
+
+    @Test
+    public void helperStepsMatchEngine() {
+        assertArrayEquals(StyleMatrixEngine.saturation(0.3F, new float[20]), new StyleChain().addSaturation(0.3F).getMatrix(), 0);
+        assertArrayEquals(StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.common(), -30, 1.4F),
+                new StyleChain().addBrightnessAndContrast(-30, 1.4F).getMatrix(), 0);
+    }
+}
@@ -0,0 +1,60 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class StyleMatrixCacheTest {
+    private static final int[] BRIGHTNESSES = {-255, -17, 0, 64, 255};
+    // values that aren't multiples of the cache's 1/1024 step
+    private static final float[] CONTRASTS = {0, 0.3337F, 1, 1.0001F, 2.71828F};
+    private static final float[] SATURATIONS = {0, 0.123F, 1, 1.9999F};
+
+    private final StyleMatrixCache cache = new StyleMatrixCache();
+
+    @Test
+    public void matchesEngineForEveryMode() {
+        float[] expected = new float[20];
+        for (int mode = -1; mode < StylePresets.getCount(); mode++) {
+            float[] saturations = mode == StylePresets.SATURATION ? SATURATIONS : new float[] {1};
+            for (int brightness : BRIGHTNESSES) {
+                for (float contrast : CONTRASTS) {
+                    for (float saturation : saturations) {
+                        StyleMatrixEngine.calculate(mode, brightness, contrast, saturation, expected);
+                        String message = "mode " + mode + ", brightness " + brightness + ", contrast " + contrast
+                                + ", saturation " + saturation;
+                        // a fresh cache misses, so the matrix comes from the exact values
+                        assertArrayEquals(message, expected, new StyleMatrixCache().get(mode, brightness, contrast, saturation,
+                                new float[20]), 0);
+                        float[] first = cache.get(mode, brightness, contrast, saturation, new float[20]);
+                        assertArrayEquals(message + " cached", first, cache.get(mode, brightness, contrast, saturation,
+                                new float[20]), 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void valuesOutsideTheKeyBypassTheCache() {
+        float[] expected = StyleMatrixEngine.calculate(StylePresets.SATURATION, 10, 1000.0001F, 3000.5F, new float[20]);
+        assertArrayEquals(expected, cache.get(StylePresets.SATURATION, 10, 1000.0001F, 3000.5F, new float[20]), 0);
+    }
+
+    @Test
+    public void hitsAreCopied() {
+        float[] out = cache.get(StylePresets.getId("sepia"), 5, 1.5F, 1, new float[20]);
+        out[0] = 42;
+        assertArrayEquals(StyleMatrixEngine.calculate(StylePresets.getId("sepia"), 5, 1.5F, 1, new float[20]),
+                cache.get(StylePresets.getId("sepia"), 5, 1.5F, 1, new float[20]), 0);
+    }
+
+    @Test
+    public void nearbyValuesShareAnEntry() {
+        float[] first = cache.get(StylePresets.getId("kodachrome"), 0, 1.20001F, 1, new float[20]);
+        // within the same 1/1024 step, so the cached matrix is returned
+        assertArrayEquals(first, cache.get(StylePresets.getId("kodachrome"), 0, 1.20002F, 1, new float[20]), 0);
+        assertArrayEquals(StyleMatrixEngine.calculate(StylePresets.getId("kodachrome"), 0, 1.20002F, 1, new float[20]),
+                first, 0.01F);
+    }
+}
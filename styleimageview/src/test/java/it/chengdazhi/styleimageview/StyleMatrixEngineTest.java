@@ -0,0 +1,224 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StyleMatrixEngineTest {
+    private static final int[] MODES = {
+            Styler.Mode.NONE, Styler.Mode.SATURATION, Styler.Mode.GREY_SCALE, Styler.Mode.INVERT, Styler.Mode.RGB_TO_BGR,
+            Styler.Mode.SEPIA, Styler.Mode.BLACK_AND_WHITE, Styler.Mode.BRIGHT, Styler.Mode.VINTAGE_PINHOLE,
+            Styler.Mode.KODACHROME, Styler.Mode.TECHNICOLOR
+    };
+    private static final int[] BRIGHTNESSES = {-255, -40, 0, 1, 100, 255};
+    private static final float[] CONTRASTS = {0, 0.5F, 1, 1.3F, 10};
+    private static final float[] SATURATIONS = {0, 0.25F, 1, 2.5F};
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void concatMatchesColorMatrixSetConcat() {
+        for (int i = 0; i < 100; i++) {
+            float[] a = randomMatrix();
+            float[] b = randomMatrix();
+            float[] out = StyleMatrixEngine.concat(a, b, new float[20]);
+            assertArrayEquals(setConcat(a, b), out, 0);
+        }
+    }
+
+    @Test
+    public void concatAppliesBFirst() {
+        float[] invert = StyleMatrixs.INVERT;
+        float[] brighter = StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.common(), 50, 1);
+        // inverting a brightened pixel darkens it, brightening an inverted pixel brightens it
+        assertEquals(255 - 50, StyleMatrixEngine.concat(invert, brighter, new float[20])[4], 0);
+        assertEquals(255 + 50, StyleMatrixEngine.concat(brighter, invert, new float[20])[4], 0);
+    }
+
+    @Test
+    public void concatAllowsOutToBeA() {
+        float[] a = randomMatrix();
+        float[] b = randomMatrix();
+        float[] expected = setConcat(a, b);
+        assertArrayEquals(expected, StyleMatrixEngine.concat(a, b, a), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concatRejectsOutSameAsB() {
+        float[] b = randomMatrix();
+        StyleMatrixEngine.concat(randomMatrix(), b, b);
+    }
+
+    @Test
+    public void lerpEndpoints() {
+        float[] start = randomMatrix();
+        float[] end = randomMatrix();
+        assertArrayEquals(start, StyleMatrixEngine.lerp(start, end, 0, new float[20]), 0);
+        assertArrayEquals(end, StyleMatrixEngine.lerp(start, end, 1, new float[20]), 0);
+    }
+
+    @Test
+    public void lerpMidpoint() {
+        float[] half = StyleMatrixEngine.lerp(StyleMatrixs.COMMON, StyleMatrixs.INVERT, 0.5F, new float[20]);
+        assertEquals(0, half[0], 0);
+        assertEquals(127.5F, half[4], 0);
+        assertEquals(1, half[18], 0);
+    }
+
+    @Test
+    public void calculateMatchesBaselineForEveryMode() {
+        float[] out = new float[20];
+        for (int mode : MODES) {
+            if (mode == Styler.Mode.SATURATION) {
+                // covered by saturationMatchesBaseline
+                continue;
+            }
+            float[] preset = mode == Styler.Mode.NONE ? StyleMatrixs.COMMON : StylePresets.get(mode);
+            for (int brightness : BRIGHTNESSES) {
+                for (float contrast : CONTRASTS) {
+                    float[] expected = baselineCalculateMatrix(mode, brightness, contrast, 1);
+                    String message = "mode " + mode + ", brightness " + brightness + ", contrast " + contrast;
+                    assertArrayEquals(message, expected, StyleMatrixEngine.calculate(preset, brightness, contrast, out), 0);
+                    assertArrayEquals(message, expected, StyleMatrixEngine.calculate(mode, brightness, contrast, 1, out), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void saturationMatchesBaseline() {
+        float[] out = new float[20];
+        for (float saturation : SATURATIONS) {
+            for (int brightness : BRIGHTNESSES) {
+                for (float contrast : CONTRASTS) {
+                    float[] expected = baselineCalculateMatrix(Styler.Mode.SATURATION, brightness, contrast, saturation);
+                    StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixEngine.saturation(saturation, out), brightness, contrast);
+                    assertArrayEquals("saturation " + saturation, expected, out, 0);
+                    assertArrayEquals("saturation " + saturation, expected,
+                            StyleMatrixEngine.calculate(StylePresets.SATURATION, brightness, contrast, saturation, out), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void calculateUsesRegisteredPresets() {
+        float[] preset = StyleMatrixs.kodachrome();
+        preset[4] = 12;
+        int id = StylePresets.register("engine_test_preset", preset);
+        float[] expected = StyleMatrixEngine.applyBrightnessAndContrast(preset.clone(), 30, 1.5F);
+        assertArrayEquals(expected, StyleMatrixEngine.calculate(id, 30, 1.5F, 1, new float[20]), 0);
+    }
+
+    @Test
+    public void calculateWithoutPresetOnlyAppliesBrightnessAndContrast() {
+        float[] expected = StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.common(), -20, 0.5F);
+        assertArrayEquals(expected, StyleMatrixEngine.calculate(Styler.Mode.NONE, -20, 0.5F, 1, new float[20]), 0);
+        assertEquals(Styler.Mode.SATURATION, StylePresets.SATURATION);
+    }
+
+    @Test
+    public void calculateKeepsThePreset() {
+        float[] sepia = StyleMatrixs.sepia();
+        StyleMatrixEngine.calculate(StyleMatrixs.SEPIA, 100, 2, new float[20]);
+        assertArrayEquals(sepia, StyleMatrixs.SEPIA, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongSize() {
+        StyleMatrixEngine.identity(new float[16]);
+    }
+
+    private float[] randomMatrix() {
+        float[] matrix = new float[20];
+        for (int i = 0; i < 20; i++) {
+            matrix[i] = (i % 5 == 4 ? 255 : 2) * (random.nextFloat() * 2 - 1);
+        }
+        return matrix;
+    }
+
+    /**
+     * android.graphics.ColorMatrix.setConcat(a, b), as the platform implements it
+     */
+    private static float[] setConcat(float[] a, float[] b) {
+        float[] out = new float[20];
+        int index = 0;
+        for (int j = 0; j < 20; j += 5) {
+            for (int i = 0; i < 4; i++) {
+                out[index++] = a[j] * b[i] + a[j + 1] * b[i + 5] + a[j + 2] * b[i + 10] + a[j + 3] * b[i + 15];
+            }
+            out[index++] = a[j] * b[4] + a[j + 1] * b[9] + a[j + 2] * b[14] + a[j + 3] * b[19] + a[j + 4];
+        }
+        return out;
+    }
+
+    /**
+     * Styler.calculateMatrix as it was before the math moved into StyleMatrixEngine
+     */
+    private static float[] baselineCalculateMatrix(int mode, int brightness, float contrast, float saturation) {
+        float[] matrix;
+        switch (mode) {
+            case Styler.Mode.GREY_SCALE:
+                matrix = StyleMatrixs.greyScale();
+                break;
+            case Styler.Mode.INVERT:
+                matrix = StyleMatrixs.invert();
+                break;
+            case Styler.Mode.RGB_TO_BGR:
+                matrix = StyleMatrixs.rgbToBgr();
+                break;
+            case Styler.Mode.SEPIA:
+                matrix = StyleMatrixs.sepia();
+                break;
+            case Styler.Mode.BRIGHT:
+                matrix = StyleMatrixs.bright();
+                break;
+            case Styler.Mode.BLACK_AND_WHITE:
+                matrix = StyleMatrixs.blackAndWhite();
+                break;
+            case Styler.Mode.VINTAGE_PINHOLE:
+                matrix = StyleMatrixs.vintagePinhole();
+                break;
+            case Styler.Mode.KODACHROME:
+                matrix = StyleMatrixs.kodachrome();
+                break;
+            case Styler.Mode.TECHNICOLOR:
+                matrix = StyleMatrixs.technicolor();
+                break;
+            case Styler.Mode.SATURATION:
+                matrix = baselineSaturation(saturation);
+                break;
+            default:
+                matrix = StyleMatrixs.common();
+                break;
+        }
+        float t = (1.0F - contrast) / 2.0F * 255.0F;
+        for (int i = 0; i < 3; i++) {
+            for (int j = i * 5; j < i * 5 + 3; j++) {
+                matrix[j] *= contrast;
+            }
+            matrix[5 * i + 4] += t + brightness;
+        }
+        return matrix;
+    }
+
+    private static float[] baselineSaturation(float saturation) {
+        float sr = (1 - saturation) * 0.3086F;
+        float sg = (1 - saturation) * 0.6094F;
+        float sb = (1 - saturation) * 0.0820F;
+        float[] result = StyleMatrixs.common();
+        result[0] = sr + saturation;
+        result[1] = sg;
+        result[2] = sb;
+        result[5] = sr;
+        result[6] = saturation + sg;
+        result[7] = sb;
+        result[10] = sr;
+        result[11] = sg;
+        result[12] = saturation + sb;
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StylePresetsTest {
+    // presets are global, so every test registers names of its own
+    private static final float[] MATRIX = {
+            0.5F, 0, 0, 0, 10,
+            0, 0.6F, 0, 0, 20,
+            0, 0, 0.7F, 0, 30,
+            0, 0, 0, 1, 0,
+    };
+
+    @Test
+    public void builtInsHaveTheirModeIds() {
+        assertEquals(Styler.Mode.SATURATION, StylePresets.getId("saturation"));
+        assertEquals(StylePresets.SATURATION, StylePresets.getId("saturation"));
+        assertEquals(Styler.Mode.GREY_SCALE, StylePresets.getId("grey_scale"));
+        assertEquals(Styler.Mode.INVERT, StylePresets.getId("invert"));
+        assertEquals(Styler.Mode.RGB_TO_BGR, StylePresets.getId("rgb_to_bgr"));
+        assertEquals(Styler.Mode.SEPIA, StylePresets.getId("sepia"));
+        assertEquals(Styler.Mode.BLACK_AND_WHITE, StylePresets.getId("black_and_white"));
+        assertEquals(Styler.Mode.BRIGHT, StylePresets.getId("bright"));
+        assertEquals(Styler.Mode.VINTAGE_PINHOLE, StylePresets.getId("vintage_pinhole"));
+        assertEquals(Styler.Mode.KODACHROME, StylePresets.getId("kodachrome"));
+        assertEquals(Styler.Mode.TECHNICOLOR, StylePresets.getId("technicolor"));
+        assertEquals("sepia", StylePresets.getName(Styler.Mode.SEPIA));
+        assertArrayEquals(StyleMatrixs.SEPIA, StylePresets.getMatrix(Styler.Mode.SEPIA, new float[20]), 0);
+        assertEquals(-1, StylePresets.getId("no_such_preset"));
+    }
+
+    @Test
+    public void registerAddsPresetWithNextId() {
+        int count = StylePresets.getCount();
+        int id = StylePresets.register("presets_test_warm", MATRIX);
+        assertTrue(id > Styler.Mode.TECHNICOLOR);
+        assertEquals(count, id);
+        assertEquals(count + 1, StylePresets.getCount());
+        assertEquals(id, StylePresets.getId("presets_test_warm"));
+        assertEquals("presets_test_warm", StylePresets.getName(id));
+        assertArrayEquals(MATRIX, StylePresets.getMatrix(id, new float[20]), 0);
+    }
+
+    @Test
+    public void registeredIdsAreModes() {
+        int id = StylePresets.register("presets_test_mode", MATRIX);
+        assertTrue(StylePresets.contains(id));
+        assertTrue(Styler.Mode.hasMode(id));
+        assertTrue(Styler.Mode.hasMode(Styler.Mode.NONE));
+        assertFalse(StylePresets.contains(Styler.Mode.NONE));
+        assertFalse(StylePresets.contains(StylePresets.getCount()));
+        assertFalse(Styler.Mode.hasMode(StylePresets.getCount()));
+        assertFalse(Styler.Mode.hasMode(-2));
+    }
+
+    @Test
+    public void registeredMatrixIsCopied() {
+        float[] matrix = MATRIX.clone();
+        int id = StylePresets.register("presets_test_copied", matrix);
+        matrix[0] = 9;
+        assertArrayEquals(MATRIX, StylePresets.getMatrix(id, new float[20]), 0);
+    }
+
+    @Test
+    public void builtInsCanNotBeChanged() {
+        float[] sepia = StyleMatrixs.sepia();
+        float[] out = new float[20];
+        assertSame(out, StylePresets.getMatrix(Styler.Mode.SEPIA, out));
+        out[0] = 9;
+        assertArrayEquals(sepia, StylePresets.getMatrix(Styler.Mode.SEPIA, new float[20]), 0);
+        assertArrayEquals(sepia, StyleMatrixs.SEPIA, 0);
+        try {
+            StylePresets.register("sepia", MATRIX);
+            fail("a built-in was registered again");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(Styler.Mode.SEPIA, StylePresets.getId("sepia"));
+        assertArrayEquals(sepia, StylePresets.getMatrix(Styler.Mode.SEPIA, new float[20]), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registerRejectsDuplicateName() {
+        StylePresets.register("presets_test_duplicate", MATRIX);
+        StylePresets.register("presets_test_duplicate", StyleMatrixs.INVERT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registerRejectsWrongSize() {
+        StylePresets.register("presets_test_short", new float[19]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getNameRejectsUnknownId() {
+        StylePresets.getName(StylePresets.getCount());
+    }
+}
@@ -0,0 +1,85 @@
+package it.chengdazhi.styleimageview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ToneCurveTest {
+    private static final ToneCurve[] CURVES = {
+            ToneCurve.gamma(2.2F),
+            ToneCurve.levels(16, 235, 0.8F),
+            new ToneCurve.Builder().setRgbPoints(0, 0, 64, 48, 192, 208, 255, 255).build(),
+            new ToneCurve.Builder().setRedPoints(0, 20, 255, 235).setBluePoints(0, 0, 128, 100, 255, 255).build()
+    };
+
+    @Test
+    public void fusedKernelMatchesTwoPassesForSeparableMatrices() {
+        float[][] matrices = {
+                StyleMatrixs.COMMON,
+                StyleMatrixs.INVERT,
+                StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.common(), 40, 1.3F),
+                StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.invert(), -120, 0.4F)
+        };
+        for (float[] matrix : matrices) {
+            assertTrue(ChannelLut.isSeparable(matrix));
+            assertFusedMatchesTwoPasses(matrix);
+        }
+    }
+
+    @Test
+    public void fusedKernelMatchesTwoPassesForOtherMatrices() {
+        float[][] matrices = {
+                StyleMatrixs.SEPIA,
+                StyleMatrixs.GREY_SCALE,
+                StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.kodachrome(), 25, 1.6F),
+                StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.technicolor(), -60, 0.7F)
+        };
+        for (float[] matrix : matrices) {
+            assertFalse(ChannelLut.isSeparable(matrix));
+            assertFusedMatchesTwoPasses(matrix);
+        }
+    }
+
+    @Test
+    public void gammaMatchesPowerCurve() {
+        byte[] table = ToneCurve.gamma(2.2F).getTable(0, new byte[256]);
+        for (int i = 0; i < 256; i++) {
+            assertEquals("input " + i, Math.round(Math.pow(i / 255.0, 1 / 2.2) * 255), table[i] & 0xFF, 1);
+        }
+    }
+
+    @Test
+    public void equalCurvesAreEqual() {
+        ToneCurve a = new ToneCurve.Builder().setRgbPoints(0, 0, 128, 150, 255, 255).build();
+        ToneCurve b = new ToneCurve.Builder().setRgbPoints(0, 0, 128, 150, 255, 255).build();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertFalse(a.equals(ToneCurve.gamma(1.5F)));
+    }
+
+    private static void assertFusedMatchesTwoPasses(float[] matrix) {
+        int[] pixels = testPixels();
+        for (ToneCurve curve : CURVES) {
+            int[] twoPasses = new int[pixels.length];
+            PixelKernel.forMatrix(matrix).apply(pixels, 0, twoPasses, 0, pixels.length);
+            curve.getKernel().apply(twoPasses, 0, twoPasses, 0, twoPasses.length);
+            int[] fused = new int[pixels.length];
+            curve.kernelFor(matrix).apply(pixels, 0, fused, 0, pixels.length);
+            assertArrayEquals(twoPasses, fused);
+        }
+    }
+
+    private static int[] testPixels() {
+        Random random = new Random(5);
+        int[] pixels = new int[1 << 14];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
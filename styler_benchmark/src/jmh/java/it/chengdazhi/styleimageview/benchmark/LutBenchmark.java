@@ -0,0 +1,91 @@
+package it.chengdazhi.styleimageview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.chengdazhi.styleimageview.CubeLut;
+import it.chengdazhi.styleimageview.PixelKernel;
+import it.chengdazhi.styleimageview.PixelStyler;
+import it.chengdazhi.styleimageview.StyleMatrixEngine;
+import it.chengdazhi.styleimageview.StyleMatrixs;
+
+/**
+ * Measures 3D LUT color grading against the matrix path, both applying the same sepia style to a 1024x1024 image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LutBenchmark {
+    private static final int IMAGE_SIZE = 1024;
+
+    /**
+     * Entries per axis of the table, the common .cube sizes
+     */
+    @Param({"17", "33", "65"})
+    public int lutSize;
+
+    @Param({"TRILINEAR", "TETRAHEDRAL"})
+    public String interpolation;
+
+    private float[] matrix;
+    private PixelKernel matrixKernel;
+    private PixelKernel lutKernel;
+    private int[] src;
+    private int[] dst;
+    private PixelStyler pixelStyler;
+
+    @Setup
+    public void setUp() {
+        matrix = StyleMatrixEngine.applyBrightnessAndContrast(StyleMatrixs.sepia(), 50, 1.5F);
+        matrixKernel = PixelKernel.forMatrix(matrix);
+        lutKernel = CubeLut.fromMatrix(matrix, lutSize).getKernel(CubeLut.Interpolation.valueOf(interpolation));
+        src = new int[IMAGE_SIZE * IMAGE_SIZE];
+        dst = new int[IMAGE_SIZE * IMAGE_SIZE];
+        Random random = new Random(lutSize);
+        for (int i = 0; i < src.length; i++) {
+            src[i] = random.nextInt() | 0xFF000000;
+        }
+        pixelStyler = new PixelStyler();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pixelStyler.shutdown();
+    }
+
+    @Benchmark
+    public int[] applyMatrix() {
+        matrixKernel.apply(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    @Benchmark
+    public int[] applyLut() {
+        lutKernel.apply(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    @Benchmark
+    public int[] applyLutParallel() {
+        pixelStyler.apply(lutKernel, src, dst, IMAGE_SIZE, IMAGE_SIZE);
+        return dst;
+    }
+
+    /**
+     * Building a table from scratch, what a first use costs on top of reading the file
+     */
+    @Benchmark
+    public CubeLut buildLut() {
+        return CubeLut.fromMatrix(matrix, lutSize);
+    }
+}
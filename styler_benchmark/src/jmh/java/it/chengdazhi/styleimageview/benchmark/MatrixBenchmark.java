@@ -0,0 +1,89 @@
+package it.chengdazhi.styleimageview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import it.chengdazhi.styleimageview.StyleMatrixEngine;
+import it.chengdazhi.styleimageview.StyleMatrixs;
+import it.chengdazhi.styleimageview.StylePresets;
+
+/**
+ * Measures the matrix work Styler does on every updateStyle() and on every animation frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatrixBenchmark {
+
+    /**
+     * One value per Styler.Mode
+     */
+    @Param({"NONE", "SATURATION", "GREY_SCALE", "INVERT", "RGB_TO_BGR", "SEPIA", "BLACK_AND_WHITE",
+            "BRIGHT", "VINTAGE_PINHOLE", "KODACHROME", "TECHNICOLOR"})
+    public String mode;
+
+    private final float[] out = new float[StyleMatrixEngine.MATRIX_SIZE];
+    private float[] start;
+    private float[] end;
+    private float progress;
+    private int modeId;
+    private int presetId;
+
+    @Setup
+    public void setUp() {
+        modeId = StylePresets.getId(mode.toLowerCase());
+        // saturation is computed from its value rather than looked up
+        presetId = mode.equals("SATURATION") ? -1 : StylePresets.getId(mode.toLowerCase());
+        start = StyleMatrixs.common();
+        end = modeMatrix();
+    }
+
+    /**
+     * What Styler computes for a style: preset lookup followed by brightness and contrast folding.
+     */
+    @Benchmark
+    public float[] calculateMatrix() {
+        return StyleMatrixEngine.calculate(modeId, 50, 1.5F, 0.5F, out);
+    }
+
+    /**
+     * The preset lookup alone, which must stay constant time however many presets are registered.
+     */
+    @Benchmark
+    public float[] presetLookup() {
+        return presetId < 0 ? StyleMatrixEngine.identity(out) : StylePresets.getMatrix(presetId, out);
+    }
+
+    @Benchmark
+    public float[] applyBrightnessAndContrast() {
+        StyleMatrixEngine.copy(end, out);
+        return StyleMatrixEngine.applyBrightnessAndContrast(out, 50, 1.5F);
+    }
+
+    /**
+     * The per-frame interpolation of an animated updateStyle().
+     */
+    @Benchmark
+    public float[] lerp() {
+        progress += 0.01F;
+        if (progress > 1) {
+            progress = 0;
+        }
+        return StyleMatrixEngine.lerp(start, end, progress, out);
+    }
+
+    private float[] modeMatrix() {
+        if (mode.equals("SATURATION")) {
+            return StyleMatrixs.saturation(0.5F);
+        }
+        return presetId < 0 ? StyleMatrixs.common() : StylePresets.getMatrix(presetId, new float[StyleMatrixEngine.MATRIX_SIZE]);
+    }
+}
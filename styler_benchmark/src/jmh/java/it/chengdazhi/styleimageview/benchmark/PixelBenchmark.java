@@ -0,0 +1,113 @@
+package it.chengdazhi.styleimageview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.chengdazhi.styleimageview.PixelKernel;
+import it.chengdazhi.styleimageview.PixelStyler;
+import it.chengdazhi.styleimageview.StyleMatrixEngine;
+import it.chengdazhi.styleimageview.StyleMatrixs;
+import it.chengdazhi.styleimageview.ToneCurve;
+
+/**
+ * Measures the CPU cost of applying a color matrix to a square ARGB image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PixelBenchmark {
+
+    @Param({"256", "1024", "4096"})
+    public int size;
+
+    /**
+     * SEPIA needs a full matrix multiply, INVERT is separable by channel and runs through lookup tables
+     */
+    @Param({"SEPIA", "INVERT"})
+    public String style;
+
+    private float[] matrix;
+    private PixelKernel kernel;
+    private PixelKernel fixedPointKernel;
+    private PixelKernel curveKernel;
+    private PixelKernel fusedCurveKernel;
+    private int[] src;
+    private int[] dst;
+    private PixelStyler pixelStyler;
+
+    @Setup
+    public void setUp() {
+        float[] styleMatrix = "INVERT".equals(style) ? StyleMatrixs.invert() : StyleMatrixs.sepia();
+        matrix = StyleMatrixEngine.applyBrightnessAndContrast(styleMatrix, 50, 1.5F);
+        kernel = PixelKernel.forMatrix(matrix);
+        fixedPointKernel = PixelKernel.forMatrix(matrix, true);
+        ToneCurve curve = new ToneCurve.Builder().setRgbPoints(0, 0, 64, 48, 192, 208, 255, 255).build();
+        curveKernel = curve.getKernel();
+        fusedCurveKernel = curve.kernelFor(matrix);
+        src = new int[size * size];
+        dst = new int[size * size];
+        Random random = new Random(size);
+        for (int i = 0; i < src.length; i++) {
+            src[i] = random.nextInt();
+        }
+        pixelStyler = new PixelStyler();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pixelStyler.shutdown();
+    }
+
+    @Benchmark
+    public int[] applyMatrix() {
+        StyleMatrixEngine.apply(matrix, src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    @Benchmark
+    public int[] applyKernel() {
+        kernel.apply(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    @Benchmark
+    public int[] applyFixedPointKernel() {
+        fixedPointKernel.apply(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    /**
+     * Matrix and S-curve in a single pass
+     */
+    @Benchmark
+    public int[] applyMatrixWithCurve() {
+        fusedCurveKernel.apply(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    /**
+     * Matrix and S-curve as two passes over the image, what applyMatrixWithCurve saves
+     */
+    @Benchmark
+    public int[] applyMatrixThenCurve() {
+        kernel.apply(src, 0, dst, 0, src.length);
+        curveKernel.apply(dst, 0, dst, 0, dst.length);
+        return dst;
+    }
+
+    @Benchmark
+    public int[] applyMatrixParallel() {
+        pixelStyler.apply(matrix, src, dst, size, size);
+        return dst;
+    }
+}